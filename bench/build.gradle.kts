@@ -0,0 +1,26 @@
+plugins {
+    id("poke.base-conventions")
+    alias(libs.plugins.jmh)
+}
+
+// the benchmark corpus, compiled and bundled as class file resources
+val corpus: SourceSet by sourceSets.creating
+
+dependencies {
+    jmh(project(":${rootProject.name}-core"))
+    jmh(libs.proguard)
+}
+
+tasks {
+    named<ProcessResources>("processJmhResources") {
+        from(corpus.output.classesDirs)
+    }
+}
+
+jmh {
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+
+    // allow narrowing the run from the command line, e.g. -Pjmh.includes=Parse
+    providers.gradleProperty("jmh.includes").orNull?.let { includes = listOf(it) }
+}
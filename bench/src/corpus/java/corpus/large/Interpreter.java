@@ -0,0 +1,181 @@
+package corpus.large;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small stack machine, representative of large methods with dense switch dispatch.
+ */
+public final class Interpreter {
+    public static final int PUSH = 0, POP = 1, DUP = 2, SWAP = 3, ADD = 4, SUB = 5, MUL = 6, DIV = 7, REM = 8,
+            NEG = 9, AND = 10, OR = 11, XOR = 12, SHL = 13, SHR = 14, USHR = 15, LOAD = 16, STORE = 17,
+            JMP = 18, JZ = 19, JNZ = 20, JLT = 21, JGT = 22, CALL = 23, RET = 24, PRINT = 25, HALT = 26,
+            INC = 27, DEC = 28, MIN = 29, MAX = 30, ABS = 31;
+
+    private final int[] code;
+    private final long[] locals = new long[256];
+    private final Deque<Long> stack = new ArrayDeque<>();
+    private final Deque<Integer> frames = new ArrayDeque<>();
+    private final Map<Integer, Long> counters = new HashMap<>();
+    private final StringBuilder out = new StringBuilder();
+
+    public Interpreter(int[] code) {
+        this.code = code;
+    }
+
+    public String run(int maxSteps) {
+        int pc = 0;
+        int steps = 0;
+        while (pc < code.length && steps++ < maxSteps) {
+            final int op = code[pc++];
+            counters.merge(op, 1L, Long::sum);
+
+            switch (op) {
+                case PUSH -> stack.push((long) code[pc++]);
+                case POP -> stack.pop();
+                case DUP -> stack.push(stack.peek());
+                case SWAP -> {
+                    final long a = stack.pop(), b = stack.pop();
+                    stack.push(a);
+                    stack.push(b);
+                }
+                case ADD -> stack.push(stack.pop() + stack.pop());
+                case SUB -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    stack.push(a - b);
+                }
+                case MUL -> stack.push(stack.pop() * stack.pop());
+                case DIV -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    if (b == 0) {
+                        throw new ArithmeticException("division by zero at " + (pc - 1));
+                    }
+                    stack.push(a / b);
+                }
+                case REM -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    if (b == 0) {
+                        throw new ArithmeticException("division by zero at " + (pc - 1));
+                    }
+                    stack.push(a % b);
+                }
+                case NEG -> stack.push(-stack.pop());
+                case AND -> stack.push(stack.pop() & stack.pop());
+                case OR -> stack.push(stack.pop() | stack.pop());
+                case XOR -> stack.push(stack.pop() ^ stack.pop());
+                case SHL -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    stack.push(a << b);
+                }
+                case SHR -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    stack.push(a >> b);
+                }
+                case USHR -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    stack.push(a >>> b);
+                }
+                case LOAD -> stack.push(locals[code[pc++]]);
+                case STORE -> locals[code[pc++]] = stack.pop();
+                case JMP -> pc = code[pc];
+                case JZ -> pc = stack.pop() == 0 ? code[pc] : pc + 1;
+                case JNZ -> pc = stack.pop() != 0 ? code[pc] : pc + 1;
+                case JLT -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    pc = a < b ? code[pc] : pc + 1;
+                }
+                case JGT -> {
+                    final long b = stack.pop(), a = stack.pop();
+                    pc = a > b ? code[pc] : pc + 1;
+                }
+                case CALL -> {
+                    frames.push(pc + 1);
+                    pc = code[pc];
+                }
+                case RET -> {
+                    if (frames.isEmpty()) {
+                        return out.toString();
+                    }
+                    pc = frames.pop();
+                }
+                case PRINT -> out.append(stack.pop()).append('\n');
+                case HALT -> {
+                    return out.toString();
+                }
+                case INC -> locals[code[pc++]]++;
+                case DEC -> locals[code[pc++]]--;
+                case MIN -> stack.push(Math.min(stack.pop(), stack.pop()));
+                case MAX -> stack.push(Math.max(stack.pop(), stack.pop()));
+                case ABS -> stack.push(Math.abs(stack.pop()));
+                default -> throw new IllegalStateException("unknown opcode " + op + " at " + (pc - 1));
+            }
+        }
+        return out.toString();
+    }
+
+    public String disassemble() {
+        final var sb = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            final int op = code[pc];
+            sb.append(pc).append(": ");
+            switch (op) {
+                case PUSH -> sb.append("push ").append(code[++pc]);
+                case POP -> sb.append("pop");
+                case DUP -> sb.append("dup");
+                case SWAP -> sb.append("swap");
+                case ADD -> sb.append("add");
+                case SUB -> sb.append("sub");
+                case MUL -> sb.append("mul");
+                case DIV -> sb.append("div");
+                case REM -> sb.append("rem");
+                case NEG -> sb.append("neg");
+                case AND -> sb.append("and");
+                case OR -> sb.append("or");
+                case XOR -> sb.append("xor");
+                case SHL -> sb.append("shl");
+                case SHR -> sb.append("shr");
+                case USHR -> sb.append("ushr");
+                case LOAD -> sb.append("load ").append(code[++pc]);
+                case STORE -> sb.append("store ").append(code[++pc]);
+                case JMP -> sb.append("jmp ").append(code[++pc]);
+                case JZ -> sb.append("jz ").append(code[++pc]);
+                case JNZ -> sb.append("jnz ").append(code[++pc]);
+                case JLT -> sb.append("jlt ").append(code[++pc]);
+                case JGT -> sb.append("jgt ").append(code[++pc]);
+                case CALL -> sb.append("call ").append(code[++pc]);
+                case RET -> sb.append("ret");
+                case PRINT -> sb.append("print");
+                case HALT -> sb.append("halt");
+                case INC -> sb.append("inc ").append(code[++pc]);
+                case DEC -> sb.append("dec ").append(code[++pc]);
+                case MIN -> sb.append("min");
+                case MAX -> sb.append("max");
+                case ABS -> sb.append("abs");
+                default -> sb.append("??? ").append(op);
+            }
+            sb.append('\n');
+            pc++;
+        }
+        return sb.toString();
+    }
+
+    public Map<Integer, Long> counters() {
+        return counters;
+    }
+
+    public static int[] fibonacci(int n) {
+        return new int[]{
+                PUSH, 0, STORE, 0,
+                PUSH, 1, STORE, 1,
+                PUSH, n, STORE, 2,
+                LOAD, 2, JZ, 33,
+                LOAD, 0, PRINT,
+                LOAD, 0, LOAD, 1, ADD, LOAD, 1, STORE, 0, STORE, 1,
+                DEC, 2, JMP, 12,
+                HALT
+        };
+    }
+}
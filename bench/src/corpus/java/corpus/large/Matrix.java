@@ -0,0 +1,144 @@
+package corpus.large;
+
+import java.util.Arrays;
+
+/**
+ * Dense numeric code with nested loops, array accesses and checked arithmetic.
+ */
+public final class Matrix {
+    private final int rows, cols;
+    private final double[] data;
+
+    public Matrix(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("invalid dimensions " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.data = new double[rows * cols];
+    }
+
+    public static Matrix identity(int n) {
+        final var m = new Matrix(n, n);
+        for (int i = 0; i < n; i++) {
+            m.set(i, i, 1);
+        }
+        return m;
+    }
+
+    public double get(int r, int c) {
+        return data[r * cols + c];
+    }
+
+    public void set(int r, int c, double v) {
+        data[r * cols + c] = v;
+    }
+
+    public Matrix multiply(Matrix o) {
+        if (cols != o.rows) {
+            throw new IllegalArgumentException("dimension mismatch");
+        }
+        final var result = new Matrix(rows, o.cols);
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < cols; k++) {
+                final double a = get(i, k);
+                if (a == 0) {
+                    continue;
+                }
+                for (int j = 0; j < o.cols; j++) {
+                    result.data[i * o.cols + j] += a * o.data[k * o.cols + j];
+                }
+            }
+        }
+        return result;
+    }
+
+    public Matrix transpose() {
+        final var result = new Matrix(cols, rows);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result.set(j, i, get(i, j));
+            }
+        }
+        return result;
+    }
+
+    public double determinant() {
+        if (rows != cols) {
+            throw new IllegalStateException("not square");
+        }
+        final double[] a = Arrays.copyOf(data, data.length);
+        final int n = rows;
+        double det = 1;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(a[r * n + col]) > Math.abs(a[pivot * n + col])) {
+                    pivot = r;
+                }
+            }
+            if (a[pivot * n + col] == 0) {
+                return 0;
+            }
+            if (pivot != col) {
+                for (int c = 0; c < n; c++) {
+                    final double t = a[col * n + c];
+                    a[col * n + c] = a[pivot * n + c];
+                    a[pivot * n + c] = t;
+                }
+                det = -det;
+            }
+            det *= a[col * n + col];
+            for (int r = col + 1; r < n; r++) {
+                final double f = a[r * n + col] / a[col * n + col];
+                for (int c = col; c < n; c++) {
+                    a[r * n + c] -= f * a[col * n + c];
+                }
+            }
+        }
+        return det;
+    }
+
+    public Matrix power(int exponent) {
+        if (exponent < 0) {
+            throw new IllegalArgumentException("negative exponent");
+        }
+        Matrix result = identity(rows), base = this;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = result.multiply(base);
+            }
+            base = base.multiply(base);
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    public long checksum() {
+        long sum = 0;
+        try {
+            for (final double v : data) {
+                sum = Math.addExact(sum, Double.doubleToLongBits(v) >>> 32);
+            }
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        final var sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            sb.append('[');
+            for (int j = 0; j < cols; j++) {
+                if (j > 0) {
+                    sb.append(", ");
+                }
+                sb.append(get(i, j));
+            }
+            sb.append("]\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package corpus.obfuscated;
+
+/**
+ * Mimics common obfuscator output: flattened control flow, opaque predicates and encrypted strings.
+ */
+public final class a {
+    private static final int b = 0x5f3759df;
+    private static final String[] c = new String[4];
+    static int d = 7;
+
+    static {
+        final int[][] e = {
+                {0x48 ^ 0x2a, 0x65 ^ 0x2a, 0x6c ^ 0x2a, 0x6c ^ 0x2a, 0x6f ^ 0x2a},
+                {0x77 ^ 0x2a, 0x6f ^ 0x2a, 0x72 ^ 0x2a, 0x6c ^ 0x2a, 0x64 ^ 0x2a},
+                {0x6f ^ 0x2a, 0x64 ^ 0x2a, 0x64 ^ 0x2a},
+                {0x65 ^ 0x2a, 0x76 ^ 0x2a, 0x65 ^ 0x2a, 0x6e ^ 0x2a},
+        };
+        for (int f = 0; f < e.length; f++) {
+            c[f] = g(e[f]);
+        }
+    }
+
+    private a() {
+    }
+
+    private static String g(int[] h) {
+        final char[] i = new char[h.length];
+        int j = 0, k = 3;
+        while (true) {
+            switch (k) {
+                case 3:
+                    if (j >= h.length) {
+                        k = 9;
+                        break;
+                    }
+                    k = 5;
+                    break;
+                case 5:
+                    i[j] = (char) (h[j] ^ 0x2a);
+                    k = (b * b) % 2 == 2 ? 3 : 6; // opaque: always 6
+                    break;
+                case 6:
+                    j++;
+                    k = 3;
+                    break;
+                case 9:
+                    return new String(i);
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    public static String l(int m) {
+        int n = m, o = 0, p = 1;
+        final StringBuilder q = new StringBuilder();
+        while (p != 0) {
+            switch (p) {
+                case 1:
+                    p = (n & 1) == 0 ? 2 : 4;
+                    if ((d * d + d) % 2 != 0) {
+                        p = 8; // never taken
+                    }
+                    break;
+                case 2:
+                    q.append(c[2 + (o & 1)]);
+                    p = 5;
+                    break;
+                case 4:
+                    q.append(c[o & 1]);
+                    p = 5;
+                    break;
+                case 5:
+                    n >>>= 1;
+                    o++;
+                    p = n == 0 ? 7 : 6;
+                    break;
+                case 6:
+                    q.append(' ');
+                    p = 1;
+                    break;
+                case 7:
+                    p = 0;
+                    break;
+                case 8:
+                    q.setLength(0);
+                    p = 0;
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        return q.toString();
+    }
+
+    public static int r(int s, int t) {
+        try {
+            if (s == Integer.MIN_VALUE) {
+                throw new ArithmeticException();
+            }
+            int u = s;
+            for (int v = 0; v < 32; v++) {
+                u = (u << 5) ^ (u >>> 27) ^ t;
+                if (((v * (v + 1)) & 1) == 1) {
+                    u = ~u; // never taken
+                }
+            }
+            return u;
+        } catch (ArithmeticException w) {
+            return t;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package corpus.obfuscated;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mimics obfuscator output with renamed members, redundant casts and dead stores.
+ */
+public final class b {
+    private final List<Object> a = new ArrayList<>();
+    private int b;
+
+    public b a(Object c) {
+        final Object d = (Object) c;
+        int e = 0;
+        e = 1;
+        a.add((Object) (String) String.valueOf(d));
+        this.b = this.b + e;
+        return this;
+    }
+
+    public int a() {
+        int c = 0;
+        for (final Object d : a) {
+            final String e = (String) d;
+            c = c + e.length();
+            c = c + 0;
+            c = c * 1;
+        }
+        return c;
+    }
+
+    public String b() {
+        final StringBuilder c = new StringBuilder();
+        c.append("");
+        for (int d = 0; d < a.size(); d++) {
+            c.append((String) a.get(d));
+            if (d < a.size() - 1) {
+                c.append((char) 44);
+            }
+        }
+        return c.toString().toString();
+    }
+
+    public static int c(int d) {
+        if (d > 0) {
+            if (d > 0) {
+                return corpus.obfuscated.a.r(d, d) ^ corpus.obfuscated.a.r(d, 0);
+            }
+        }
+        return d == 0 ? 0 : -c(-d);
+    }
+}
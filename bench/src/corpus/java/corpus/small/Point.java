@@ -0,0 +1,50 @@
+package corpus.small;
+
+public final class Point implements Comparable<Point> {
+    private final int x;
+    private final int y;
+
+    public Point(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public int x() {
+        return this.x;
+    }
+
+    public int y() {
+        return this.y;
+    }
+
+    public Point translate(int dx, int dy) {
+        return new Point(this.x + dx, this.y + dy);
+    }
+
+    public double distance(Point other) {
+        final int dx = this.x - other.x;
+        final int dy = this.y - other.y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public int compareTo(Point o) {
+        final int c = Integer.compare(this.x, o.x);
+        return c != 0 ? c : Integer.compare(this.y, o.y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Point p && p.x == this.x && p.y == this.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.x + this.y;
+    }
+
+    @Override
+    public String toString() {
+        return "Point[x=" + this.x + ", y=" + this.y + "]";
+    }
+}
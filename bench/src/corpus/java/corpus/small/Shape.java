@@ -0,0 +1,21 @@
+package corpus.small;
+
+public interface Shape {
+    double area();
+
+    default String describe() {
+        return getClass().getSimpleName() + " with area " + area();
+    }
+
+    enum Kind {
+        CIRCLE, SQUARE, TRIANGLE;
+
+        public Shape create(double size) {
+            return switch (this) {
+                case CIRCLE -> () -> Math.PI * size * size;
+                case SQUARE -> () -> size * size;
+                case TRIANGLE -> () -> Math.sqrt(3) / 4 * size * size;
+            };
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package corpus.small;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Strings {
+    private static final boolean DEBUG = false;
+    private static final char[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private Strings() {
+    }
+
+    public static boolean isBlank(String s) {
+        if (s == null) {
+            return true;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static List<String> split(String s, char separator) {
+        final List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == separator) {
+                parts.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(s.substring(start));
+
+        if (DEBUG) {
+            System.out.println("split " + s + " into " + parts.size() + " parts");
+        }
+        return parts;
+    }
+
+    public static String hex(byte[] bytes) {
+        final var sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+        return sb.toString();
+    }
+
+    public static String repeat(String s, int count) {
+        String result = "";
+        for (int i = 0; i < count; i++) {
+            result = result + s;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package run.slicer.poke;
+
+import proguard.AppView;
+import proguard.classfile.ClassPool;
+
+/**
+ * A runtime library pool linked against program classes the same way the analyzer does it,
+ * living in the core package to reach the library pools.
+ */
+public final class RuntimeLibrary implements AutoCloseable {
+    private final LibraryPools.Lease lease;
+
+    public RuntimeLibrary(String... modules) {
+        final var library = (LibraryImpl) Library.runtime(modules);
+        this.lease = Tasks.withWorkers(null, Runtime.getRuntime().availableProcessors(), library.pools()::acquire);
+    }
+
+    /**
+     * Links the program classes against the library classes, replacing the previously linked ones.
+     */
+    public AppView link(ClassPool programPool) {
+        this.lease.link(programPool);
+        return new AppView(programPool, this.lease.pool());
+    }
+
+    @Override
+    public void close() {
+        this.lease.close();
+    }
+}
@@ -0,0 +1,47 @@
+package run.slicer.poke.bench;
+
+import org.openjdk.jmh.annotations.*;
+import run.slicer.poke.Analyzer;
+import run.slicer.poke.Entry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks end-to-end analysis through the public API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzeBenchmark {
+    @Param({"SMALL", "LARGE", "OBFUSCATED"})
+    public Corpus corpus;
+
+    @Param({"VERIFY", "OPTIMIZE", "ALL"})
+    public String mode;
+
+    @Param({"1", "5"})
+    public int passes;
+
+    private List<Entry> entries;
+    private Analyzer analyzer;
+
+    @Setup
+    public void setup() {
+        this.entries = this.corpus.load();
+        this.analyzer = Analyzer.builder()
+                .passes(this.passes)
+                .verify(!this.mode.equals("OPTIMIZE"))
+                .optimize(!this.mode.equals("VERIFY"))
+                .inline(this.mode.equals("ALL"))
+                .build();
+    }
+
+    @Benchmark
+    public List<? extends Entry> analyze() {
+        return this.analyzer.analyze(this.entries);
+    }
+}
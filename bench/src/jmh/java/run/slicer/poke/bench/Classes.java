@@ -0,0 +1,62 @@
+package run.slicer.poke.bench;
+
+import proguard.AppView;
+import proguard.Configuration;
+import proguard.classfile.ClassPool;
+import proguard.classfile.ProgramClass;
+import proguard.classfile.io.ProgramClassReader;
+import proguard.classfile.io.ProgramClassWriter;
+import run.slicer.poke.Entry;
+import run.slicer.poke.RuntimeLibrary;
+import run.slicer.poke.proguard.Optimizations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+final class Classes {
+    private Classes() {
+    }
+
+    static ProgramClass read(Entry entry) {
+        final var clazz = new ProgramClass();
+        clazz.accept(new ProgramClassReader(new DataInputStream(new ByteArrayInputStream(entry.data()))));
+
+        return clazz;
+    }
+
+    static byte[] write(ProgramClass clazz) {
+        final var output = new ByteArrayOutputStream();
+        clazz.accept(new ProgramClassWriter(new DataOutputStream(output)));
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Reads the classes into a pool, linked against the library like the analyzer does it.
+     */
+    static AppView view(List<Entry> entries, RuntimeLibrary library) {
+        final List<ProgramClass> classes = new ArrayList<>(entries.size());
+        for (final Entry entry : entries) {
+            classes.add(read(entry));
+        }
+
+        return library.link(new ClassPool(classes));
+    }
+
+    /**
+     * Creates the configuration of a fully enabled analyzer, with the optimizations of {@code Analyzer.Builder}.
+     */
+    static Configuration configuration() {
+        final var config = new Configuration();
+        config.optimize = true;
+        config.preverify = true;
+        config.optimizationPasses = 1;
+        config.optimizations = Optimizations.filter(true);
+
+        return config;
+    }
+}
@@ -0,0 +1,62 @@
+package run.slicer.poke.bench;
+
+import run.slicer.poke.Entry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The benchmark corpus, compiled from the {@code corpus} source set and bundled as resources.
+ */
+public enum Corpus {
+    SMALL("corpus/small/"),
+    LARGE("corpus/large/"),
+    OBFUSCATED("corpus/obfuscated/");
+
+    private final String prefix;
+
+    Corpus(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public List<Entry> load() {
+        final List<Entry> entries = new ArrayList<>();
+        try {
+            final Path location = Path.of(Corpus.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                final Path dir = location.resolve(this.prefix);
+                try (final Stream<Path> files = Files.walk(dir)) {
+                    for (final Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        entries.add(Entry.of(location.relativize(file).toString(), Files.readAllBytes(file)));
+                    }
+                }
+            } else {
+                try (final var zf = new ZipFile(location.toFile())) {
+                    for (final ZipEntry entry : Collections.list(zf.entries())) {
+                        if (!entry.isDirectory() && entry.getName().startsWith(this.prefix) && entry.getName().endsWith(".class")) {
+                            entries.add(Entry.of(entry.getName(), zf.getInputStream(entry).readAllBytes()));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("Empty corpus " + this.name());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,33 @@
+package run.slicer.poke.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import run.slicer.poke.Entry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"SMALL", "LARGE", "OBFUSCATED"})
+    public Corpus corpus;
+
+    private List<Entry> entries;
+
+    @Setup
+    public void setup() {
+        this.entries = this.corpus.load();
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (final Entry entry : this.entries) {
+            bh.consume(Classes.read(entry));
+        }
+    }
+}
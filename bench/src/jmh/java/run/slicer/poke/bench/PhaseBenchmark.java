@@ -0,0 +1,83 @@
+package run.slicer.poke.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import proguard.AppView;
+import proguard.Configuration;
+import proguard.classfile.Clazz;
+import proguard.classfile.ProgramClass;
+import proguard.classfile.pass.PrimitiveArrayConstantIntroducer;
+import proguard.optimize.peephole.LineNumberLinearizer;
+import proguard.preverify.PreverificationClearer;
+import proguard.preverify.Preverifier;
+import proguard.preverify.SubroutineInliner;
+import run.slicer.poke.Entry;
+import run.slicer.poke.RuntimeLibrary;
+import run.slicer.poke.proguard.Optimizer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the individual analysis phases, each on a freshly parsed class pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhaseBenchmark {
+    @Param({"SMALL", "LARGE", "OBFUSCATED"})
+    public Corpus corpus;
+
+    private List<Entry> entries;
+    private Configuration config;
+    private RuntimeLibrary library;
+    private AppView view;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        this.entries = this.corpus.load();
+        this.config = Classes.configuration();
+        this.library = new RuntimeLibrary("java.base");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        this.library.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        this.view = Classes.view(this.entries, this.library);
+        new PreverificationClearer().execute(this.view);
+    }
+
+    @Benchmark
+    public AppView subroutineInliner() {
+        new SubroutineInliner(this.config).execute(this.view);
+        return this.view;
+    }
+
+    @Benchmark
+    public AppView optimizerPass() throws Exception {
+        new PrimitiveArrayConstantIntroducer().execute(this.view);
+        new Optimizer(this.config).execute(this.view);
+        return this.view;
+    }
+
+    @Benchmark
+    public AppView preverifier() {
+        new LineNumberLinearizer().execute(this.view);
+        new Preverifier(this.config).execute(this.view);
+        return this.view;
+    }
+
+    @Benchmark
+    public void write(Blackhole bh) {
+        for (final Clazz clazz : this.view.programClassPool.classes()) {
+            bh.consume(Classes.write((ProgramClass) clazz));
+        }
+    }
+}
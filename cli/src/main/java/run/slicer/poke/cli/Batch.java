@@ -0,0 +1,203 @@
+package run.slicer.poke.cli;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.Analyzer;
+import run.slicer.poke.Report;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Many jobs run with one analyzer on one pool of threads.
+ * <p>
+ * A manifest has a job per line, in the form of {@code <input> -> <output>}, relative to the directory of the manifest.
+ * Inputs may be globs, the matched files are then written to the output directory, keeping their relative paths.
+ * Empty lines and lines starting with {@code #} are ignored.
+ */
+final class Batch {
+    private static final String SEPARATOR = "->";
+
+    /**
+     * The amount of threads per job running at once, the rest of the threads are left to the parallel stages.
+     */
+    private static final int THREADS_PER_JOB = 4;
+
+    private Batch() {
+    }
+
+    static List<Job> read(Path manifest) throws IOException {
+        final Path directory = manifest.toAbsolutePath().getParent();
+
+        final List<Job> jobs = new ArrayList<>();
+        final List<String> lines = Files.readAllLines(manifest);
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            final int separator = line.indexOf(SEPARATOR);
+            if (separator == -1) {
+                throw new IllegalArgumentException("Missing '" + SEPARATOR + "' in manifest line " + (i + 1) + ": " + line);
+            }
+
+            final String input = line.substring(0, separator).strip();
+            final Path output = directory.resolve(line.substring(separator + SEPARATOR.length()).strip());
+            if (isGlob(input)) {
+                expand(directory, input, output, jobs);
+            } else {
+                jobs.add(new Job(directory.resolve(input), output));
+            }
+        }
+
+        return jobs;
+    }
+
+    private static boolean isGlob(String path) {
+        return path.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    private static void expand(Path directory, String glob, Path output, List<Job> jobs) throws IOException {
+        // walk from the deepest directory without glob characters
+        final String normalized = glob.replace('\\', '/');
+        final int firstGlob = normalized.length() - normalized.replaceFirst("^[^*?\\[{]*", "").length();
+        final int baseEnd = normalized.lastIndexOf('/', firstGlob);
+
+        final Path base = directory.resolve(baseEnd == -1 ? "" : normalized.substring(0, baseEnd));
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized.substring(baseEnd + 1));
+        if (!Files.isDirectory(base)) {
+            return;
+        }
+
+        try (final Stream<Path> files = Files.walk(base)) {
+            files.filter(Files::isRegularFile)
+                    .sorted()
+                    .forEach(file -> {
+                        final Path relative = base.relativize(file);
+                        if (matcher.matches(relative)) {
+                            jobs.add(new Job(file, output.resolve(relative.toString())));
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Runs the jobs, largest inputs first, and prints a summary.
+     * <p>
+     * Only a few jobs run at once, each on a runner that picks up the next job when it's done,
+     * so the tasks of their parallel stages don't queue up behind jobs that haven't started yet.
+     *
+     * @param reporter the consumer of the reports of the individual jobs, {@code null} if only the summary is printed
+     * @param executor the executor to run on, {@code null} if a pool should be created
+     * @return the exit code
+     */
+    static int run(
+            List<Job> jobs, Analyzer.Builder builder, @Nullable Consumer<? super Report> reporter,
+            @Nullable Compression compression, int threads, @Nullable Executor executor, PrintWriter err
+    ) {
+        final long start = System.nanoTime();
+
+        final Map<Job, Long> sizes = new HashMap<>();
+        for (final Job job : jobs) {
+            sizes.put(job, size(job.input()));
+        }
+
+        final List<Job> ordered = new ArrayList<>(jobs);
+        ordered.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+
+        final ExecutorService pool = executor == null ? Serve.newPool(threads) : null;
+        try {
+            // the jobs and their parallel stages share the same threads, each job compresses and writes its output on threads of its own
+            final Executor target = pool != null ? pool : executor;
+            final var summary = new Summary();
+            final Analyzer analyzer = builder.executor(target).reporter(report -> {
+                summary.add(report);
+                if (reporter != null) {
+                    reporter.accept(report);
+                }
+            }).build();
+
+            final var failed = new AtomicInteger();
+            final var next = new AtomicInteger();
+            final Runnable runner = () -> {
+                int i;
+                while ((i = next.getAndIncrement()) < ordered.size()) {
+                    final Job job = ordered.get(i);
+                    try {
+                        job.run(analyzer, compression, threads);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        synchronized (err) {
+                            err.printf("Failed to process %s: %s%n", job.input(), e);
+                            err.flush();
+                        }
+                    }
+                }
+            };
+
+            final int runners = Math.min(ordered.size(), Math.max(1, threads / THREADS_PER_JOB));
+            final var running = new CompletableFuture<?>[runners];
+            for (int i = 0; i < runners; i++) {
+                running[i] = CompletableFuture.runAsync(runner, target);
+            }
+            CompletableFuture.allOf(running).join();
+
+            long inputSize = 0, outputSize = 0;
+            for (final Job job : jobs) {
+                inputSize += sizes.get(job);
+                outputSize += size(job.output());
+            }
+
+            synchronized (err) {
+                err.printf(
+                        "Processed %d jobs (%d failed) in %d ms, %d -> %d bytes, analyzed %d classes (%d methods, %d over budget)%n",
+                        jobs.size(), failed.get(), (System.nanoTime() - start) / 1_000_000,
+                        inputSize, outputSize, summary.classes, summary.methods, summary.skipped
+                );
+                err.flush();
+            }
+
+            return failed.get() == 0 ? 0 : 1;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Summary {
+        private int classes = 0;
+        private int methods = 0;
+        private int skipped = 0;
+
+        synchronized void add(Report report) {
+            this.classes += report.classes();
+            this.methods += report.methods();
+            this.skipped += report.skipped().size();
+        }
+    }
+}
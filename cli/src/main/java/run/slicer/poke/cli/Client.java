@@ -0,0 +1,44 @@
+package run.slicer.poke.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A thin client, forwarding a job to a server and relaying its output.
+ */
+final class Client {
+    private Client() {
+    }
+
+    static int run(Path socket, List<String> args) throws IOException {
+        try (final SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+
+            final var in = new DataInputStream(Channels.newInputStream(channel));
+            final var out = new DataOutputStream(Channels.newOutputStream(channel));
+            new Protocol.Request(Path.of("").toAbsolutePath(), args).write(out);
+
+            while (true) {
+                final int stream = in.readByte();
+                if (stream == Protocol.EXIT) {
+                    return in.readInt();
+                }
+
+                final var data = new byte[in.readInt()];
+                in.readFully(data);
+
+                final PrintStream target = stream == Protocol.OUT ? System.out : System.err;
+                target.write(data);
+                target.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package run.slicer.poke.cli;
+
+import picocli.CommandLine;
+
+import java.util.zip.Deflater;
+
+/**
+ * A compression method and level for output entries.
+ */
+record Compression(int method, int level) {
+    static final Compression DEFAULT = new Compression(ZipArchive.DEFLATED, Deflater.DEFAULT_COMPRESSION);
+    static final Compression STORED = new Compression(ZipArchive.STORED, 0);
+
+    static final class Converter implements CommandLine.ITypeConverter<Compression> {
+        @Override
+        public Compression convert(String value) {
+            if (value.equalsIgnoreCase("stored")) {
+                return STORED;
+            }
+
+            final int level;
+            try {
+                level = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new CommandLine.TypeConversionException("Invalid compression '" + value + "', expected 'stored' or a level of 0-9");
+            }
+            if (level < 0 || level > 9) {
+                throw new CommandLine.TypeConversionException("Invalid compression level " + level + ", expected 0-9");
+            }
+
+            return new Compression(ZipArchive.DEFLATED, level);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package run.slicer.poke.cli;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.Analyzer;
+import run.slicer.poke.Entry;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An analysis of a class/JAR file.
+ */
+record Job(Path input, Path output) {
+    // how many entries can queue up for the writer per analysis thread
+    private static final int PENDING_PER_THREAD = 4;
+
+    /**
+     * @param compression the compression for all output entries, {@code null} if untouched entries should be copied as-is
+     * @param threads     the amount of threads the analysis runs on, sizing the compression workers and how far output entries can queue up
+     */
+    void run(Analyzer analyzer, @Nullable Compression compression, int threads) throws IOException {
+        boolean isClass = false;
+        try (final var dis = new DataInputStream(Files.newInputStream(this.input))) {
+            isClass = dis.readInt() == 0xcafebabe; // class file magic
+        } catch (IOException ignored) {
+        }
+
+        final Path parent = this.output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (isClass) {
+            Files.write(
+                    this.output, analyzer.analyze(Files.readAllBytes(this.input)),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE
+            );
+        } else {
+            final ZipArchive archive = ZipArchive.open(this.input);
+            if (archive != null) {
+                try (archive; final var writer = new ZipWriter(Files.newOutputStream(this.output), compression)) {
+                    runArchive(analyzer, archive, writer, threads);
+                }
+                return;
+            }
+
+            try (final var zf = new ZipFile(this.input.toFile());
+                 final var zos = new ZipOutputStream(Files.newOutputStream(this.output))) {
+                if (compression != null) {
+                    zos.setLevel(compression.level());
+                }
+                final Iterator<? extends ZipEntry> zipEntries = Collections.list(zf.entries()).iterator();
+
+                // results come in the order of the class entries, copy everything in between as we go
+                analyzer.analyze(
+                        zf.stream()
+                                .filter(Job::isClassEntry)
+                                .map(e -> new ZipEntryImpl(zf, e))
+                                .toList(),
+                        result -> {
+                            try {
+                                ZipEntry entry;
+                                while (!isClassEntry(entry = zipEntries.next())) {
+                                    copyEntry(zf, zos, entry, null, compression);
+                                }
+
+                                copyEntry(zf, zos, entry, result, compression);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                );
+
+                while (zipEntries.hasNext()) {
+                    copyEntry(zf, zos, zipEntries.next(), null, compression);
+                }
+            }
+        }
+    }
+
+    /**
+     * Analyzes the classes of the archive, copying everything else with its compressed data untouched.
+     * <p>
+     * Entries are prepared (i.e. compressed) by compression workers of their own, separate from the analysis,
+     * and their futures are handed to a dedicated writer thread through a bounded queue, which writes them
+     * in their original order, overlapping with the analysis of later classes.
+     * The sink only ever waits for the writer if it falls behind by more than the queue holds.
+     */
+    private static void runArchive(Analyzer analyzer, ZipArchive archive, ZipWriter writer, int threads) throws IOException {
+        final Iterator<ZipArchive.Member> members = archive.members().iterator();
+        final var output = new Output(archive, writer, threads, threads * PENDING_PER_THREAD);
+
+        output.start();
+        try {
+            // results come in the order of the class entries, copy everything in between as we go
+            analyzer.analyze(
+                    archive.members().stream()
+                            .filter(ZipArchive.Member::isClass)
+                            .map(m -> new ZipMemberImpl(archive, m))
+                            .toList(),
+                    result -> {
+                        ZipArchive.Member member;
+                        while (!(member = members.next()).isClass()) {
+                            output.add(member, null);
+                        }
+
+                        // unchanged classes are handed back as they are, copy them without reading them again
+                        final boolean unchanged = result instanceof ZipMemberImpl m && m.member() == member;
+                        output.add(member, unchanged ? null : result.data());
+                    }
+            );
+
+            while (members.hasNext()) {
+                output.add(members.next(), null);
+            }
+        } catch (Throwable t) {
+            try {
+                output.finish();
+            } catch (Throwable suppressed) {
+                t.addSuppressed(suppressed);
+            }
+            throw t;
+        }
+
+        output.finish();
+    }
+
+    /**
+     * The writer thread of an archive, writing queued entries in order as their preparation completes.
+     */
+    private static final class Output extends Thread {
+        private static final Future<ZipWriter.Prepared> END = CompletableFuture.completedFuture(null);
+
+        private final ZipArchive archive;
+        private final ZipWriter writer;
+        private final ExecutorService compressors;
+        private final BlockingQueue<Future<ZipWriter.Prepared>> queue;
+        private volatile @Nullable Throwable failure;
+
+        /**
+         * @param compressors the amount of threads preparing entries
+         * @param capacity    the amount of entries that can queue up for the writer
+         */
+        Output(ZipArchive archive, ZipWriter writer, int compressors, int capacity) {
+            super("poke-writer");
+            this.setDaemon(true);
+
+            this.archive = archive;
+            this.writer = writer;
+            this.compressors = Executors.newFixedThreadPool(Math.max(1, compressors), r -> {
+                final var thread = new Thread(r, "poke-compressor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Starts preparing an entry and queues it, waiting while the queue is full.
+         */
+        void add(ZipArchive.Member member, byte @Nullable [] data) {
+            this.rethrow();
+            this.put(this.compressors.submit(() -> this.writer.prepare(this.archive, member, data)));
+        }
+
+        /**
+         * Waits for all queued entries to be written, rethrowing any failure to prepare or write them.
+         */
+        void finish() throws IOException {
+            try {
+                this.put(END);
+                this.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                this.compressors.shutdownNow();
+            }
+
+            final Throwable failure = this.failure;
+            if (failure instanceof IOException ioe) {
+                throw ioe;
+            }
+            this.rethrow();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Future<ZipWriter.Prepared> pending;
+                while ((pending = this.queue.take()) != END) {
+                    if (this.failure != null) {
+                        // keep taking entries, so nobody waits on a full queue forever
+                        pending.cancel(false);
+                        continue;
+                    }
+
+                    try {
+                        this.writer.write(pending.get());
+                    } catch (ExecutionException e) {
+                        this.failure = e.getCause();
+                    } catch (IOException | RuntimeException | Error e) {
+                        this.failure = e;
+                    }
+                }
+            } catch (InterruptedException e) {
+                this.failure = e;
+            }
+        }
+
+        private void put(Future<ZipWriter.Prepared> pending) {
+            try {
+                this.queue.put(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException(e));
+            }
+        }
+
+        private void rethrow() {
+            final Throwable failure = this.failure;
+            if (failure instanceof IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            if (failure instanceof RuntimeException re) {
+                throw re;
+            }
+            if (failure instanceof Error e) {
+                throw e;
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(new IOException(failure));
+            }
+        }
+    }
+
+    private static boolean isClassEntry(ZipEntry entry) {
+        return !entry.isDirectory() && entry.getName().endsWith(".class");
+    }
+
+    private static void copyEntry(
+            ZipFile zf, ZipOutputStream zos, ZipEntry entry, @Nullable Entry result, @Nullable Compression compression
+    ) throws IOException {
+        // carry over what a ZipEntry can hold, the file attributes are lost, unlike with the raw copies of ZipWriter
+        final var newEntry = new ZipEntry(entry.getName());
+        if (entry.getTime() != -1) {
+            newEntry.setTime(entry.getTime());
+        }
+        if (entry.getExtra() != null) {
+            newEntry.setExtra(entry.getExtra());
+        }
+        if (entry.getComment() != null) {
+            newEntry.setComment(entry.getComment());
+        }
+        final byte[] data = entry.isDirectory() ? new byte[0] : result != null ? result.data() : zf.getInputStream(entry).readAllBytes();
+
+        if (compression != null && compression.method() == ZipArchive.STORED) {
+            final var crc = new CRC32();
+            crc.update(data);
+
+            newEntry.setMethod(ZipEntry.STORED);
+            newEntry.setSize(data.length);
+            newEntry.setCompressedSize(data.length);
+            newEntry.setCrc(crc.getValue());
+        }
+
+        zos.putNextEntry(newEntry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+}
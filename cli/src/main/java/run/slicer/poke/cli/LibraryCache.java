@@ -0,0 +1,138 @@
+package run.slicer.poke.cli;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.Library;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+/**
+ * Parsed libraries kept around between analyses.
+ * <p>
+ * Libraries are identified by their paths, a library is parsed again if any of its files has been added, removed
+ * or modified since. Only the most recently used libraries are kept, and a library is read once, outside the lock,
+ * while other analyses asking for it wait for that.
+ * <p>
+ * Combinations of libraries are kept as well, they hold the linked class pools of the analyzers using them,
+ * so jobs with the same libraries don't copy and link all library classes again.
+ */
+final class LibraryCache {
+    private static final int MAX_LIBRARIES = 16;
+
+    private record Stamp(Path path, FileTime modified, long size) {
+    }
+
+    private record Cached(List<Stamp> stamps, CompletableFuture<Library> library) {
+    }
+
+    private final Map<List<Path>, Cached> libraries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Path>, Cached> eldest) {
+            return this.size() > MAX_LIBRARIES;
+        }
+    };
+    private final Map<List<Library>, Library> combined = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Library>, Library> eldest) {
+            return this.size() > MAX_LIBRARIES;
+        }
+    };
+    private @Nullable Library runtime = null;
+
+    Library get(List<Path> paths) throws IOException {
+        final List<Path> key = List.copyOf(paths);
+        final List<Stamp> stamps = stamps(key);
+
+        final Cached cached;
+        final boolean load;
+        synchronized (this.libraries) {
+            final Cached existing = this.libraries.get(key);
+            load = existing == null || !existing.stamps().equals(stamps);
+            cached = load ? new Cached(stamps, new CompletableFuture<>()) : existing;
+
+            if (load) {
+                this.libraries.put(key, cached);
+            }
+        }
+
+        if (load) {
+            try {
+                cached.library().complete(Library.of(key.toArray(Path[]::new)));
+            } catch (Throwable e) {
+                cached.library().completeExceptionally(e);
+
+                // don't keep the failure around, the next analysis tries again
+                synchronized (this.libraries) {
+                    this.libraries.remove(key, cached);
+                }
+            }
+        }
+
+        try {
+            return cached.library().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error err) {
+                throw err;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stamps of all files of the library, the files in directories are listed in a stable order.
+     */
+    private static List<Stamp> stamps(List<Path> paths) throws IOException {
+        final List<Stamp> stamps = new ArrayList<>();
+        for (final Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                stamps.add(stamp(path));
+                continue;
+            }
+
+            try (final Stream<Path> files = Files.walk(path)) {
+                for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    stamps.add(stamp(file));
+                }
+            }
+        }
+
+        return stamps;
+    }
+
+    private static Stamp stamp(Path file) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Stamp(file, attributes.lastModifiedTime(), attributes.size());
+    }
+
+    /**
+     * Returns the combination of the libraries, the same one for the same libraries.
+     */
+    Library combine(List<Library> libraries) {
+        synchronized (this.combined) {
+            // libraries are compared by identity, libraries that have been parsed again make for a new combination
+            return this.combined.computeIfAbsent(List.copyOf(libraries), k -> Library.of(k.toArray(Library[]::new)));
+        }
+    }
+
+    synchronized Library runtime() {
+        if (this.runtime == null) {
+            this.runtime = Library.runtime();
+        }
+
+        return this.runtime;
+    }
+}
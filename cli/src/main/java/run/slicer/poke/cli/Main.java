@@ -1,34 +1,33 @@
 package run.slicer.poke.cli;
 
+import org.jspecify.annotations.Nullable;
 import picocli.CommandLine;
 import run.slicer.poke.Analyzer;
-import run.slicer.poke.Entry;
+import run.slicer.poke.Library;
+import run.slicer.poke.Report;
 
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.io.PrintWriter;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 @CommandLine.Command(
         name = "poke",
         mixinStandardHelpOptions = true,
         version = BuildParameters.VERSION,
-        description = "A Java library for performing bytecode normalization and generic deobfuscation."
+        description = "A Java library for performing bytecode normalization and generic deobfuscation.",
+        subcommands = Serve.class
 )
 public final class Main implements Callable<Integer> {
-    @CommandLine.Parameters(index = "0", description = "The class/JAR file to be analyzed.")
-    private Path input;
+    @CommandLine.Parameters(index = "0", arity = "0..1", description = "The class/JAR file to be analyzed.")
+    private @Nullable Path input;
 
-    @CommandLine.Parameters(index = "1", description = "The analyzed class/JAR file destination.")
-    private Path output;
+    @CommandLine.Parameters(index = "1", arity = "0..1", description = "The analyzed class/JAR file destination.")
+    private @Nullable Path output;
 
     @CommandLine.Option(names = {"-p", "--passes"}, description = "The amount of optimization passes.", defaultValue = "1")
     private int passes;
@@ -42,54 +41,199 @@ public final class Main implements Callable<Integer> {
     @CommandLine.Option(names = "--inline", description = "Performs method inlining.", negatable = true)
     private boolean inline;
 
+    @CommandLine.Option(names = {"-t", "--threads"}, description = "The amount of threads used for processing classes.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = "--max-instructions", description = "The maximum amount of instructions of a method to be optimized, 0 for no limit.", defaultValue = "0")
+    private int maxInstructions;
+
+    @CommandLine.Option(names = "--max-evaluations", description = "The maximum amount of instruction evaluations for a method to be optimized, 0 for no limit.", defaultValue = "0")
+    private int maxEvaluations;
+
+    @CommandLine.Option(names = "--max-time", description = "The maximum time in milliseconds a method may take to evaluate for it to be optimized, 0 for no limit.", defaultValue = "0")
+    private long maxTime;
+
+    @CommandLine.Option(names = "--partition", description = "Analyzes groups of classes that don't reference each other separately.", negatable = true)
+    private boolean partition;
+
+    @CommandLine.Option(names = "--timeout", description = "The time limit of an analysis in milliseconds, 0 for no limit.", defaultValue = "0")
+    private long timeout;
+
+    @CommandLine.Option(
+            names = "--on-timeout",
+            description = "What to output when the time limit is hit: ${COMPLETION-CANDIDATES}.",
+            defaultValue = "FAIL"
+    )
+    private Analyzer.Fallback fallback;
+
+    @CommandLine.Option(names = {"-l", "--library"}, description = "A class/JAR file or directory to be used as a library.")
+    private List<Path> libraries = List.of();
+
+    @CommandLine.Option(names = "--jdk", description = "Uses the running JDK as a library.", negatable = true)
+    private boolean jdk;
+
+    @CommandLine.Option(names = "--cache", description = "A directory for caching analysis results.")
+    private @Nullable Path cache;
+
+    @CommandLine.Option(names = "--cache-size", description = "The maximum cache size in megabytes.", defaultValue = "1024")
+    private long cacheSize;
+
+    @CommandLine.Option(names = "--incremental", description = "A file for persisting state between runs, only changed parts of the input are analyzed again.")
+    private @Nullable Path incremental;
+
+    @CommandLine.Option(names = "--report", description = "Prints an analysis report.", negatable = true)
+    private boolean report;
+
+    @CommandLine.Option(
+            names = {"-c", "--compression"}, converter = Compression.Converter.class,
+            description = "The compression of all output entries, 'stored' or a level of 0-9; by default, only changed entries are compressed again."
+    )
+    private @Nullable Compression compression;
+
+    @CommandLine.Option(names = "--batch", description = "A manifest of jobs to run instead of <input> and <output>, one '<input> -> <output>' per line.")
+    private @Nullable Path batch;
+
+    @CommandLine.Option(names = "--connect", description = "Runs the analysis on a server started with the serve command.")
+    private boolean connect;
+
+    @CommandLine.Option(names = "--socket", description = "The server socket path.", defaultValue = Protocol.DEFAULT_SOCKET)
+    private Path socket;
+
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    private final Path directory;
+    private final LibraryCache libraryCache;
+    private final @Nullable Executor executor;
+
+    public Main() {
+        this(Path.of(""), new LibraryCache(), null);
+    }
+
+    /**
+     * @param directory    the directory to resolve relative paths against
+     * @param libraryCache the parsed libraries to reuse
+     * @param executor     the executor to run analyses on, {@code null} if each should use its own threads
+     */
+    Main(Path directory, LibraryCache libraryCache, @Nullable Executor executor) {
+        this.directory = directory;
+        this.libraryCache = libraryCache;
+        this.executor = executor;
+    }
+
     @Override
     public Integer call() throws Exception {
-        final Analyzer analyzer = Analyzer.builder()
+        if (this.connect) {
+            return Client.run(this.socket, forwardedArgs(this.spec.commandLine().getParseResult().originalArgs()));
+        }
+        if (this.batch != null) {
+            if (this.input != null) {
+                throw new CommandLine.ParameterException(this.spec.commandLine(), "<input> and <output> can't be used with --batch");
+            }
+            if (this.incremental != null) {
+                throw new CommandLine.ParameterException(this.spec.commandLine(), "--incremental can't be used with --batch");
+            }
+        } else if (this.input == null || this.output == null) {
+            throw new CommandLine.ParameterException(this.spec.commandLine(), "Missing required parameters: <input>, <output>");
+        }
+
+        final List<Library> libraries = new ArrayList<>();
+        if (!this.libraries.isEmpty()) {
+            libraries.add(this.libraryCache.get(this.libraries.stream().map(this.directory::resolve).toList()));
+        }
+        if (this.jdk) {
+            libraries.add(this.libraryCache.runtime());
+        }
+
+        final Analyzer.Builder builder = Analyzer.builder()
                 .passes(this.passes)
                 .optimize(this.optimize)
                 .verify(this.verify)
                 .inline(this.inline)
-                .build();
+                .threads(this.threads)
+                .methodBudget(this.maxInstructions, this.maxEvaluations, this.maxTime)
+                .partition(this.partition)
+                .timeout(this.timeout)
+                .fallback(this.fallback)
+                .events();
+        if (!libraries.isEmpty()) {
+            builder.libraries(this.libraryCache.combine(libraries));
+        }
+        if (this.cache != null) {
+            builder.cache(this.directory.resolve(this.cache), this.cacheSize * 1024 * 1024);
+        }
+        if (this.incremental != null) {
+            builder.incremental(this.directory.resolve(this.incremental));
+        }
 
-        boolean isClass = false;
-        try (final var dis = new DataInputStream(Files.newInputStream(this.input))) {
-            isClass = dis.readInt() == 0xcafebabe; // class file magic
-        } catch (IOException ignored) {
+        final PrintWriter err = this.spec.commandLine().getErr();
+        final @Nullable Consumer<Report> reporter = this.report ? report -> printReport(report, err) : null;
+        if (this.batch != null) {
+            return Batch.run(Batch.read(this.directory.resolve(this.batch)), builder, reporter, this.compression, this.threads, this.executor, err);
+        }
+        if (reporter != null) {
+            builder.reporter(reporter);
         }
 
-        Files.createDirectories(this.output.getParent());
-        if (isClass) {
-            Files.write(
-                    this.output, analyzer.analyze(Files.readAllBytes(this.input)),
-                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE
-            );
-        } else {
-            try (final var zf = new ZipFile(this.input.toFile())) {
-                final var results = analyzer.analyze(
-                        zf.stream()
-                                .filter(e -> !e.isDirectory() && e.getName().endsWith(".class"))
-                                .map(e -> new ZipEntryImpl(zf, e))
-                                .toList()
-                );
+        // the analysis runs on these threads, its outputs are compressed by workers and written by a thread of their own
+        final ExecutorService pool = this.executor == null && this.threads > 1 ? Serve.newPool(this.threads - 1) : null;
+        try {
+            final Executor executor = this.executor != null ? this.executor : pool != null ? pool : Runnable::run;
 
-                final var entries = results.stream().collect(Collectors.toMap(Entry::name, Function.identity()));
-                try (final var zos = new ZipOutputStream(Files.newOutputStream(this.output))) {
-                    for (final ZipEntry entry : Collections.list(zf.entries())) {
-                        // TODO: copy entry metadata?
-                        zos.putNextEntry(new ZipEntry(entry.getName()));
+            final Job job = new Job(this.directory.resolve(this.input), this.directory.resolve(this.output));
+            job.run(builder.executor(executor).build(), this.compression, this.threads);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
 
-                        if (!entry.isDirectory()) {
-                            final Entry pokeEntry = entries.get(entry.getName());
-                            zos.write(pokeEntry != null ? pokeEntry.data() : zf.getInputStream(entry).readAllBytes());
-                        }
+        return 0;
+    }
 
-                        zos.closeEntry();
-                    }
-                }
+    /**
+     * Returns the arguments to be forwarded to a server, i.e. without the client options.
+     */
+    private static List<String> forwardedArgs(List<String> args) {
+        final List<String> forwarded = new ArrayList<>(args.size());
+        for (int i = 0; i < args.size(); i++) {
+            final String arg = args.get(i);
+            if (arg.equals("--connect") || arg.startsWith("--socket=")) {
+                continue;
             }
+            if (arg.equals("--socket")) {
+                i++; // skip the value
+                continue;
+            }
+
+            forwarded.add(arg);
         }
 
-        return 0;
+        return forwarded;
+    }
+
+    private static void printReport(Report report, PrintWriter err) {
+        // batch jobs finish concurrently, their reports shouldn't be interleaved
+        synchronized (err) {
+            err.printf(
+                    "Analyzed %d classes (%d methods), %d -> %d bytes%n",
+                    report.classes(), report.methods(), report.inputSize(), report.outputSize()
+            );
+            for (final Report.Stage stage : report.stages()) {
+                err.printf(
+                        "  %s%s: %d ms wall, %d ms CPU%n",
+                        stage.pass() > 0 ? "[pass " + stage.pass() + "] " : "", stage.name(),
+                        stage.wallTime() / 1_000_000, stage.cpuTime() / 1_000_000
+                );
+            }
+            for (final Report.Pass pass : report.passes()) {
+                err.printf("  [pass %d] %s%n", pass.index(), pass.counters());
+            }
+            for (final Report.SkippedMethod method : report.skipped()) {
+                err.printf("  Skipped %s.%s: %s%n", method.className(), method.method(), method.reason());
+            }
+            err.flush();
+        }
     }
 
     public static void main(String[] args) {
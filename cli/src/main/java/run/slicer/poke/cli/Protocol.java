@@ -0,0 +1,77 @@
+package run.slicer.poke.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The protocol between the server and its clients.
+ * <p>
+ * A client sends its working directory and arguments, the server then replies with frames of the job's output
+ * (a stream ID, the length and the bytes), followed by a frame with the exit code.
+ */
+final class Protocol {
+    static final String DEFAULT_SOCKET = "${sys:java.io.tmpdir}/poke-${sys:user.name}.sock";
+
+    static final int EXIT = 0;
+    static final int OUT = 1;
+    static final int ERR = 2;
+
+    private Protocol() {
+    }
+
+    record Request(Path directory, List<String> args) {
+        static Request read(DataInputStream in) throws IOException {
+            final Path directory = Path.of(in.readUTF());
+
+            final var args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+
+            return new Request(directory, List.of(args));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(this.directory.toString());
+            out.writeInt(this.args.size());
+            for (final String arg : this.args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Creates a stream writing output frames with the given stream ID.
+     */
+    static OutputStream frames(DataOutputStream out, int stream) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                synchronized (out) {
+                    out.writeByte(stream);
+                    out.writeInt(len);
+                    out.write(b, off, len);
+                    out.flush();
+                }
+            }
+        };
+    }
+
+    static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package run.slicer.poke.cli;
+
+import picocli.CommandLine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@CommandLine.Command(
+        name = "serve",
+        mixinStandardHelpOptions = true,
+        description = "Runs a server for analyzing files with --connect, keeping the JVM and parsed libraries warm between jobs."
+)
+public final class Serve implements Callable<Integer> {
+    @CommandLine.Option(names = "--socket", description = "The server socket path.", defaultValue = Protocol.DEFAULT_SOCKET)
+    private Path socket;
+
+    @CommandLine.Option(names = {"-t", "--threads"}, description = "The amount of threads shared by all jobs.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @Override
+    public Integer call() throws Exception {
+        if (Files.exists(this.socket)) {
+            try (final SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(this.socket))) {
+                throw new CommandLine.ExecutionException(this.spec.commandLine(), "A server is already listening on " + this.socket);
+            } catch (IOException e) {
+                // a stale socket of a server that's gone
+                Files.delete(this.socket);
+            }
+        }
+
+        final ExecutorService executor = newPool(this.threads);
+        final var libraryCache = new LibraryCache();
+
+        try (final ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(this.socket));
+            this.spec.commandLine().getErr().println("Listening on " + this.socket);
+            this.spec.commandLine().getErr().flush();
+
+            while (true) {
+                final SocketChannel channel = server.accept();
+                Thread.ofPlatform()
+                        .name("poke-server-job")
+                        .daemon()
+                        .start(() -> handle(channel, libraryCache, executor));
+            }
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(this.socket);
+        }
+    }
+
+    static ExecutorService newPool(int threads) {
+        final var threadId = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            final var thread = new Thread(r, "poke-worker-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    private static void handle(SocketChannel channel, LibraryCache libraryCache, ExecutorService executor) {
+        try (channel) {
+            final var in = new DataInputStream(Channels.newInputStream(channel));
+            final var out = new DataOutputStream(Channels.newOutputStream(channel));
+            final Protocol.Request request = Protocol.Request.read(in);
+
+            final var stdout = new PrintWriter(new OutputStreamWriter(Protocol.frames(out, Protocol.OUT), StandardCharsets.UTF_8), true);
+            final var stderr = new PrintWriter(new OutputStreamWriter(Protocol.frames(out, Protocol.ERR), StandardCharsets.UTF_8), true);
+
+            final int exitCode = new CommandLine(new Main(request.directory(), libraryCache, executor))
+                    .setOut(stdout)
+                    .setErr(stderr)
+                    .execute(request.args().toArray(String[]::new));
+
+            stdout.flush();
+            stderr.flush();
+            Protocol.writeExit(out, exitCode);
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+}
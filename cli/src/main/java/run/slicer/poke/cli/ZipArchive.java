@@ -0,0 +1,250 @@
+package run.slicer.poke.cli;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A ZIP file with access to the raw, still compressed data of its entries.
+ * <p>
+ * Only the common subset of the format is supported - no ZIP64, encryption or compression methods
+ * other than stored and deflated, archives using anything else are left to {@link java.util.zip.ZipFile}.
+ */
+final class ZipArchive implements Closeable {
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    static final int LOCAL_HEADER = 0x04034b50;
+    static final int CENTRAL_HEADER = 0x02014b50;
+    static final int END_HEADER = 0x06054b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_HEADER_SIZE = 22;
+
+    static final int FLAG_ENCRYPTED = 1;
+    static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    static final int FLAG_UTF8 = 1 << 11;
+
+    /**
+     * An entry of the central directory.
+     *
+     * @param offset the offset of the local header
+     */
+    record Member(
+            String name,
+            int versionMadeBy,
+            int versionNeeded,
+            int flags,
+            int method,
+            int time,
+            int date,
+            long crc,
+            long compressedSize,
+            long size,
+            byte[] extra,
+            byte[] comment,
+            int internalAttributes,
+            long externalAttributes,
+            long offset
+    ) {
+        boolean isDirectory() {
+            return this.name.endsWith("/");
+        }
+
+        boolean isClass() {
+            return !this.isDirectory() && this.name.endsWith(".class");
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Member> members;
+
+    private ZipArchive(FileChannel channel, List<Member> members) {
+        this.channel = channel;
+        this.members = members;
+    }
+
+    /**
+     * Opens an archive, returns {@code null} if it's not a ZIP file or uses unsupported features.
+     */
+    static @Nullable ZipArchive open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final List<Member> members = readCentralDirectory(channel);
+            if (members != null) {
+                return new ZipArchive(channel, members);
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // malformed, let ZipFile deal with it
+        }
+
+        channel.close();
+        return null;
+    }
+
+    private static @Nullable List<Member> readCentralDirectory(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize < END_HEADER_SIZE) {
+            return null;
+        }
+
+        // the end header is followed by a comment of up to 65535 bytes
+        final int tailSize = (int) Math.min(fileSize, END_HEADER_SIZE + 0xffff);
+        final ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_HEADER) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return null;
+        }
+
+        final int disk = tail.getShort(end + 4) & 0xffff;
+        final int count = tail.getShort(end + 10) & 0xffff;
+        final long cenSize = tail.getInt(end + 12) & 0xffffffffL;
+        final long cenOffset = tail.getInt(end + 16) & 0xffffffffL;
+        if (disk != 0 || count == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL) {
+            return null; // multi-disk or ZIP64
+        }
+
+        final ByteBuffer cen = read(channel, cenOffset, (int) cenSize);
+        final List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (cen.getInt(cen.position()) != CENTRAL_HEADER) {
+                return null;
+            }
+
+            final int pos = cen.position();
+            final int flags = cen.getShort(pos + 8) & 0xffff;
+            final int method = cen.getShort(pos + 10) & 0xffff;
+            final long compressedSize = cen.getInt(pos + 20) & 0xffffffffL;
+            final long size = cen.getInt(pos + 24) & 0xffffffffL;
+            final int nameLength = cen.getShort(pos + 28) & 0xffff;
+            final int extraLength = cen.getShort(pos + 30) & 0xffff;
+            final int commentLength = cen.getShort(pos + 32) & 0xffff;
+            final long offset = cen.getInt(pos + 42) & 0xffffffffL;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != STORED && method != DEFLATED)
+                    || compressedSize == 0xffffffffL || size == 0xffffffffL || offset == 0xffffffffL) {
+                return null;
+            }
+
+            final Charset charset = (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+            final byte[] name = bytes(cen, pos + CENTRAL_HEADER_SIZE, nameLength);
+            members.add(new Member(
+                    new String(name, charset),
+                    cen.getShort(pos + 4) & 0xffff,
+                    cen.getShort(pos + 6) & 0xffff,
+                    flags,
+                    method,
+                    cen.getShort(pos + 12) & 0xffff,
+                    cen.getShort(pos + 14) & 0xffff,
+                    cen.getInt(pos + 16) & 0xffffffffL,
+                    compressedSize,
+                    size,
+                    bytes(cen, pos + CENTRAL_HEADER_SIZE + nameLength, extraLength),
+                    bytes(cen, pos + CENTRAL_HEADER_SIZE + nameLength + extraLength, commentLength),
+                    cen.getShort(pos + 36) & 0xffff,
+                    cen.getInt(pos + 38) & 0xffffffffL,
+                    offset
+            ));
+
+            cen.position(pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+        }
+
+        return members;
+    }
+
+    List<Member> members() {
+        return this.members;
+    }
+
+    /**
+     * Reads the extra field of the local header, it may differ from the one in the central directory.
+     */
+    byte[] localExtra(Member member) throws IOException {
+        final ByteBuffer header = read(this.channel, member.offset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new IOException("Invalid local header for " + member.name());
+        }
+
+        final int nameLength = header.getShort(26) & 0xffff;
+        final int extraLength = header.getShort(28) & 0xffff;
+
+        return bytes(read(this.channel, member.offset() + LOCAL_HEADER_SIZE + nameLength, extraLength), 0, extraLength);
+    }
+
+    /**
+     * Reads the compressed data of an entry.
+     */
+    byte[] rawData(Member member) throws IOException {
+        final ByteBuffer header = read(this.channel, member.offset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new IOException("Invalid local header for " + member.name());
+        }
+
+        final long dataOffset = member.offset() + LOCAL_HEADER_SIZE
+                + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+
+        return bytes(read(this.channel, dataOffset, (int) member.compressedSize()), 0, (int) member.compressedSize());
+    }
+
+    /**
+     * Reads the uncompressed data of an entry, safe to be called concurrently.
+     */
+    byte[] data(Member member) throws IOException {
+        final byte[] raw = this.rawData(member);
+        if (member.method() == STORED) {
+            return raw;
+        }
+
+        final var inflater = new Inflater(true);
+        try (final var in = new InflaterInputStream(new ByteArrayInputStream(raw), inflater)) {
+            return in.readNBytes((int) member.size());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int index, int length) {
+        final var bytes = new byte[length];
+        buffer.get(index, bytes);
+
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
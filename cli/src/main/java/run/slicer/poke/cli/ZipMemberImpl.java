@@ -0,0 +1,22 @@
+package run.slicer.poke.cli;
+
+import run.slicer.poke.Entry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+record ZipMemberImpl(ZipArchive archive, ZipArchive.Member member) implements Entry {
+    @Override
+    public String name() {
+        return member.name();
+    }
+
+    @Override
+    public byte[] data() {
+        try {
+            return archive.data(member);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package run.slicer.poke.cli;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a ZIP file from the entries of a {@link ZipArchive}, either copying their compressed data as-is
+ * or compressing new data, keeping the metadata of the original entries in both cases.
+ * <p>
+ * Entries are {@linkplain #prepare(ZipArchive, ZipArchive.Member, byte[]) prepared} first, which may happen
+ * concurrently, and then {@linkplain #write(Prepared) written} one by one.
+ */
+final class ZipWriter implements Closeable {
+    /**
+     * An entry ready to be written.
+     */
+    record Prepared(ZipArchive.Member member, byte[] localExtra, byte[] compressed) {
+    }
+
+    private final OutputStream out;
+    private final @Nullable Compression compression;
+    private final List<ZipArchive.Member> written = new ArrayList<>();
+    private long offset = 0;
+
+    /**
+     * @param compression the compression for all entries, {@code null} if untouched entries should be copied as-is
+     *                    and changed ones compressed like their originals
+     */
+    ZipWriter(OutputStream out, @Nullable Compression compression) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.compression = compression;
+    }
+
+    /**
+     * Prepares an entry for writing, safe to be called concurrently.
+     *
+     * @param data the new data of the entry, {@code null} if it's untouched
+     */
+    Prepared prepare(ZipArchive archive, ZipArchive.Member member, byte @Nullable [] data) throws IOException {
+        final boolean canCopy = this.compression == null
+                || (this.compression.method() == ZipArchive.STORED && member.method() == ZipArchive.STORED);
+        if (canCopy && (data == null || isUnchanged(member, data))) {
+            return new Prepared(member, archive.localExtra(member), archive.rawData(member));
+        }
+        if (data == null) {
+            data = archive.data(member);
+        }
+
+        final Compression compression = this.compression != null
+                ? this.compression
+                : member.method() == ZipArchive.STORED ? Compression.STORED : Compression.DEFAULT;
+        final byte[] compressed = compression.method() == ZipArchive.STORED ? data : deflate(data, compression.level());
+
+        final var crc = new CRC32();
+        crc.update(data);
+
+        return new Prepared(
+                new ZipArchive.Member(
+                        member.name(), member.versionMadeBy(),
+                        compression.method() == ZipArchive.DEFLATED ? Math.max(member.versionNeeded(), 20) : member.versionNeeded(),
+                        member.flags(), compression.method(), member.time(), member.date(), crc.getValue(),
+                        compressed.length, data.length, member.extra(), member.comment(),
+                        member.internalAttributes(), member.externalAttributes(), 0
+                ),
+                archive.localExtra(member),
+                compressed
+        );
+    }
+
+    private static boolean isUnchanged(ZipArchive.Member member, byte[] data) {
+        if (data.length != member.size()) {
+            return false;
+        }
+
+        final var crc = new CRC32();
+        crc.update(data);
+
+        return crc.getValue() == member.crc();
+    }
+
+    private static byte[] deflate(byte[] data, int level) throws IOException {
+        final var deflater = new Deflater(level, true);
+        try {
+            final var output = new ByteArrayOutputStream(data.length / 2 + 64);
+            try (final var dos = new DeflaterOutputStream(output, deflater)) {
+                dos.write(data);
+            }
+
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    void write(Prepared prepared) throws IOException {
+        this.write(prepared.member(), prepared.localExtra(), prepared.compressed());
+    }
+
+    private void write(ZipArchive.Member member, byte[] localExtra, byte[] compressed) throws IOException {
+        final byte[] name = member.name().getBytes(charset(member));
+        // the sizes are known upfront, so there's no need for a data descriptor
+        final int flags = member.flags() & ~ZipArchive.FLAG_DATA_DESCRIPTOR;
+
+        final ByteBuffer header = ByteBuffer.allocate(ZipArchive.LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(ZipArchive.LOCAL_HEADER)
+                .putShort((short) member.versionNeeded())
+                .putShort((short) flags)
+                .putShort((short) member.method())
+                .putShort((short) member.time())
+                .putShort((short) member.date())
+                .putInt((int) member.crc())
+                .putInt(compressed.length)
+                .putInt((int) member.size())
+                .putShort((short) name.length)
+                .putShort((short) localExtra.length);
+
+        final long localOffset = this.offset;
+        this.write(header.array());
+        this.write(name);
+        this.write(localExtra);
+        this.write(compressed);
+
+        this.written.add(new ZipArchive.Member(
+                member.name(), member.versionMadeBy(), member.versionNeeded(), flags, member.method(),
+                member.time(), member.date(), member.crc(), compressed.length, member.size(), member.extra(),
+                member.comment(), member.internalAttributes(), member.externalAttributes(), localOffset
+        ));
+    }
+
+    private void write(byte[] b) throws IOException {
+        this.out.write(b);
+        this.offset += b.length;
+
+        if (this.offset > 0xffffffffL) {
+            throw new IOException("Output archive too large, ZIP64 isn't supported");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.written.size() >= 0xffff) {
+                throw new IOException("Too many entries in output archive, ZIP64 isn't supported");
+            }
+
+            final long cenOffset = this.offset;
+            for (final ZipArchive.Member member : this.written) {
+                final byte[] name = member.name().getBytes(charset(member));
+                final ByteBuffer header = ByteBuffer.allocate(ZipArchive.CENTRAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(ZipArchive.CENTRAL_HEADER)
+                        .putShort((short) member.versionMadeBy())
+                        .putShort((short) member.versionNeeded())
+                        .putShort((short) member.flags())
+                        .putShort((short) member.method())
+                        .putShort((short) member.time())
+                        .putShort((short) member.date())
+                        .putInt((int) member.crc())
+                        .putInt((int) member.compressedSize())
+                        .putInt((int) member.size())
+                        .putShort((short) name.length)
+                        .putShort((short) member.extra().length)
+                        .putShort((short) member.comment().length)
+                        .putShort((short) 0) // disk number
+                        .putShort((short) member.internalAttributes())
+                        .putInt((int) member.externalAttributes())
+                        .putInt((int) member.offset());
+
+                this.write(header.array());
+                this.write(name);
+                this.write(member.extra());
+                this.write(member.comment());
+            }
+
+            final ByteBuffer end = ByteBuffer.allocate(ZipArchive.END_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(ZipArchive.END_HEADER)
+                    .putShort((short) 0) // disk number
+                    .putShort((short) 0) // disk with the central directory
+                    .putShort((short) this.written.size())
+                    .putShort((short) this.written.size())
+                    .putInt((int) (this.offset - cenOffset))
+                    .putInt((int) cenOffset)
+                    .putShort((short) 0); // comment length
+            this.write(end.array());
+        } finally {
+            this.out.close();
+        }
+    }
+
+    private static Charset charset(ZipArchive.Member member) {
+        return (member.flags() & ZipArchive.FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+    }
+}
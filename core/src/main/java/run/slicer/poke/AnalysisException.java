@@ -0,0 +1,17 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+
+public final class AnalysisException extends RuntimeException {
+    private final @Nullable String name;
+
+    public AnalysisException(@Nullable String name, String message, Throwable cause) {
+        super(name != null ? message + " (" + name + ")" : message, cause);
+        this.name = name;
+    }
+
+    @Nullable
+    public String name() {
+        return this.name;
+    }
+}
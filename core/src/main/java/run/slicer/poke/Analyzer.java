@@ -1,13 +1,51 @@
 package run.slicer.poke;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
+/**
+ * An analyzer, built once and reused.
+ * <p>
+ * Analyzers are immutable and thread-safe - parsed libraries and optimization settings are shared,
+ * while every analysis works on its own copies, so one analyzer can serve concurrent calls.
+ */
 public interface Analyzer {
     static Builder builder() {
         return new AnalyzerImpl.Builder();
     }
 
-    List<? extends Entry> analyze(Iterable<? extends Entry> entries);
+    default List<? extends Entry> analyze(Iterable<? extends Entry> entries) {
+        return this.analyze(entries, new CancellationToken());
+    }
+
+    default List<? extends Entry> analyze(Iterable<? extends Entry> entries, CancellationToken token) {
+        final List<Entry> results = new ArrayList<>();
+        this.analyze(entries, results::add, token);
+
+        return results;
+    }
+
+    /**
+     * Analyzes the entries, handing each finished entry to the sink in input order.
+     * <p>
+     * Unlike {@link #analyze(Iterable)}, the outputs aren't retained after being handed over,
+     * so the sink can write them out and let them be collected right away.
+     */
+    default void analyze(Iterable<? extends Entry> entries, Consumer<? super Entry> sink) {
+        this.analyze(entries, sink, new CancellationToken());
+    }
+
+    /**
+     * Analyzes the entries like {@link #analyze(Iterable, Consumer)}, stopping early once the token is cancelled
+     * or the {@linkplain Builder#timeout(long) timeout} elapses.
+     * <p>
+     * What's handed to the sink in that case depends on the {@linkplain Builder#fallback(Fallback) fallback},
+     * results of stopped analyses are never cached or persisted.
+     */
+    void analyze(Iterable<? extends Entry> entries, Consumer<? super Entry> sink, CancellationToken token);
 
     default byte[] analyze(byte[] b) {
         return this.analyze(Entry.of(null, b)).getFirst().data();
@@ -17,6 +55,31 @@ public interface Analyzer {
         return this.analyze(List.of(entries));
     }
 
+    /**
+     * What a stopped analysis hands over.
+     */
+    enum Fallback {
+        /**
+         * Nothing, a {@link java.util.concurrent.CancellationException} is thrown instead.
+         * <p>
+         * With {@linkplain Builder#partition(boolean) partitioning}, the outputs of groups finished
+         * before that may have been handed over already.
+         */
+        FAIL,
+        /**
+         * The original entries.
+         */
+        ORIGINAL,
+        /**
+         * The results of the optimization passes completed so far.
+         * <p>
+         * The usual processing after the optimization passes (e.g. preverification) is still done and
+         * can't be stopped anymore. All classes are written to a snapshot before every pass, which adds some overhead.
+         * Analyses stopped before the optimization passes hand over the original entries.
+         */
+        PARTIAL
+    }
+
     interface Builder {
         Builder passes(int passes);
 
@@ -38,6 +101,85 @@ public interface Analyzer {
             return this.inline(true);
         }
 
+        /**
+         * Sets the parallelism of all parallel stages, defaults to the number of processors available to the JVM.
+         * <p>
+         * The only exception is the side effect marking of the optimizer, which is done by proguard-core
+         * on a pool of its own, sized by the global {@code parallel.threads} system property.
+         */
+        Builder threads(int threads);
+
+        /**
+         * Sets an executor for running the parallel stages on, instead of a pool created for each analysis.
+         * <p>
+         * The calling thread takes part in the work as well, so at most {@code threads - 1} tasks
+         * are submitted to the executor at once.
+         */
+        Builder executor(Executor executor);
+
+        /**
+         * Sets per-method limits for optimization, methods over any of them are left unoptimized
+         * and listed in the {@linkplain Report#skipped() report}.
+         * <p>
+         * Giant methods, such as the flattened ones of obfuscated code, can otherwise take minutes
+         * or exhaust memory during partial evaluation.
+         *
+         * @param maxInstructions the maximum amount of instructions, 0 for no limit
+         * @param maxEvaluations  the maximum amount of instruction evaluations in a trial evaluation, 0 for no limit
+         * @param maxTimeMillis   the maximum wall time of a trial evaluation in milliseconds, 0 for no limit
+         */
+        Builder methodBudget(int maxInstructions, int maxEvaluations, long maxTimeMillis);
+
+        /**
+         * Sets whether the input should be split into groups of classes that don't reference each other
+         * (e.g. the bundled libraries of a fat JAR), which are then analyzed separately, one after another.
+         * <p>
+         * Only one group is held in memory at once, along with a single copy of the libraries,
+         * and each can be written out as soon as it's done.
+         * Stopped analyses fall back for each group separately.
+         */
+        Builder partition(boolean partition);
+
+        default Builder partition() {
+            return this.partition(true);
+        }
+
+        /**
+         * Sets a time limit for each analysis, 0 for no limit (the default).
+         */
+        Builder timeout(long timeoutMillis);
+
+        /**
+         * Sets what stopped analyses hand over, defaults to {@link Fallback#FAIL}.
+         */
+        Builder fallback(Fallback fallback);
+
+        /**
+         * Adds libraries, classes of earlier libraries take precedence over those of later ones.
+         * <p>
+         * The linked library class pools are kept with a single library, but several libraries are combined
+         * anew for every analyzer, see {@link Library#of(Library...)} for sharing them between analyzers.
+         */
+        Builder libraries(Library... libraries);
+
+        Builder cache(Path directory, long maxSize);
+
+        Builder incremental(Path stateFile);
+
+        /**
+         * Sets a consumer for the reports of analyses, it's not invoked for results served from the cache.
+         */
+        Builder reporter(Consumer<? super Report> reporter);
+
+        /**
+         * Sets whether Java Flight Recorder events should be emitted, they're only recorded when enabled in a recording.
+         */
+        Builder events(boolean events);
+
+        default Builder events() {
+            return this.events(true);
+        }
+
         Analyzer build();
     }
 }
@@ -1,8 +1,10 @@
 package run.slicer.poke;
 
+import org.jspecify.annotations.Nullable;
 import proguard.AppView;
 import proguard.Configuration;
 import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
 import proguard.classfile.ProgramClass;
 import proguard.classfile.io.ProgramClassReader;
 import proguard.classfile.io.ProgramClassWriter;
@@ -13,70 +15,573 @@ import proguard.optimize.peephole.LineNumberLinearizer;
 import proguard.preverify.PreverificationClearer;
 import proguard.preverify.Preverifier;
 import proguard.preverify.SubroutineInliner;
+import run.slicer.poke.proguard.Cancellation;
+import run.slicer.poke.proguard.ClassHash;
+import run.slicer.poke.proguard.MethodBudget;
+import run.slicer.poke.proguard.Optimizations;
 import run.slicer.poke.proguard.Optimizer;
+import run.slicer.poke.proguard.Workers;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+record AnalyzerImpl(
+        Configuration config,
+        Optimizations optimizations,
+        MethodBudget methodBudget,
+        int threads,
+        @Nullable Executor executor,
+        boolean partition,
+        long timeout,
+        Fallback fallback,
+        LibraryImpl library,
+        @Nullable Cache cache,
+        @Nullable IncrementalState incremental,
+        ReportCollector.@Nullable Reporter reporter,
+        Supplier<Tracer> tracer
+) implements Analyzer {
+    /**
+     * The amount of classes partitioned inputs are packed into groups of, groups are analyzed one after another,
+     * so this bounds the classes held at once, while larger groups share the per-group overhead over more classes.
+     */
+    private static final int CLASSES_PER_GROUP = 4096;
+    private static final int CHUNKS_PER_THREAD = 4;
 
-record AnalyzerImpl(Configuration config) implements Analyzer {
     @Override
-    public List<? extends Entry> analyze(Iterable<? extends Entry> entries) {
-        final Map<Entry, ProgramClass> classes = new HashMap<>();
-        for (final Entry entry : entries) {
-            final var clazz = new ProgramClass();
-            classes.put(entry, clazz);
+    public void analyze(Iterable<? extends Entry> entries, Consumer<? super Entry> sink, CancellationToken token) {
+        final List<Entry> inputs = new ArrayList<>();
+        entries.forEach(inputs::add);
+
+        final var interruption = Interruption.of(token, this.timeout * 1_000_000L);
+        final String fingerprint = this.fingerprint();
+        try {
+            if (this.cache != null) {
+                this.cache.compute(fingerprint, inputs, () -> this.analyze0(fingerprint, inputs, interruption)).forEach(sink);
+                return;
+            }
+
+            if (this.incremental != null) {
+                // the incremental state needs all outputs anyway
+                this.analyze0(fingerprint, inputs, interruption).forEach(sink);
+                return;
+            }
+        } catch (Stopped e) {
+            // only a part of the inputs may have been analyzed, the rest is handed over as-is
+            for (final Entry input : inputs) {
+                sink.accept(e.results.getOrDefault(input, input));
+            }
+            return;
+        }
+
+        this.analyze1(inputs, sink, interruption);
+    }
+
+    private List<? extends Entry> analyze0(String fingerprint, List<Entry> inputs, Interruption interruption) {
+        return Tasks.withWorkers(this.executor, this.threads, interruption, workers -> {
+            final Function<List<Entry>, List<? extends Entry>> analysis = in -> {
+                final List<Entry> results = new ArrayList<>(in.size());
+                if (!this.analyze1(in, results::add, workers, interruption)) {
+                    throw new Stopped(in, results);
+                }
+
+                return results;
+            };
+
+            if (this.incremental != null) {
+                return this.incremental.analyze(fingerprint, inputs, workers, analysis);
+            }
+
+            return analysis.apply(inputs);
+        });
+    }
+
+    /**
+     * Returns a normalized description of the configuration and libraries, used for keying cached and incremental results.
+     */
+    private String fingerprint() {
+        final boolean willOptimize = config.optimize && config.optimizationPasses > 0;
+
+        final var sb = new StringBuilder()
+                .append("verify=").append(config.preverify)
+                .append(";passes=").append(willOptimize ? config.optimizationPasses : 0);
+        if (willOptimize && config.optimizations != null) {
+            sb.append(";optimizations=").append(String.join(",", config.optimizations.stream().sorted().toList()));
+        }
+        if (willOptimize && this.methodBudget.isLimited()) {
+            sb.append(";budget=").append(this.methodBudget.maxInstructions())
+                    .append(',').append(this.methodBudget.maxEvaluations())
+                    .append(',').append(this.methodBudget.maxTime());
+        }
+        if (!this.library.isEmpty()) {
+            sb.append(";library=").append(this.library.digest());
+        }
+
+        return sb.toString();
+    }
+
+    private void analyze1(List<Entry> inputs, Consumer<? super Entry> sink, Interruption interruption) {
+        Tasks.withWorkers(this.executor, this.threads, interruption, workers -> this.analyze1(inputs, sink, workers, interruption));
+    }
+
+    /**
+     * Analyzes the inputs, handing over the fallback if the analysis is stopped.
+     *
+     * @return whether the analysis ran to completion
+     */
+    private boolean analyze1(List<Entry> inputs, Consumer<? super Entry> sink, Workers workers, Interruption interruption) {
+        // the stage CPU times end up in reports and events alike
+        final Tracer tracer = this.tracer.get();
+        final var report = new ReportCollector(
+                this.reporter != null || tracer != Tracer.NONE ? ReportCollector.PROCESS_CPU_CLOCK : ReportCollector.NO_CPU_CLOCK,
+                tracer
+        );
+        report.tracer().analysisStarted();
+
+        final List<int[]> groups = new ArrayList<>();
+        if (this.partition) {
+            stage(report, interruption, "Partitioning classes", inputs.size(),
+                    () -> groups.addAll(Partitions.split(inputs, workers, CLASSES_PER_GROUP)));
+        }
+
+        // the groups take turns with the same library classes, rather than holding a copy each
+        final boolean completed;
+        try (final LibraryPools.Lease libraries = this.library.pools().acquire(workers)) {
+            completed = groups.size() > 1
+                    ? this.processGroups(inputs, groups, sink, libraries, workers, interruption, report)
+                    : this.processOrFallback(inputs, sink, libraries, workers, interruption, report);
+        }
+
+        final Report result = report.build();
+        report.tracer().analysisFinished(result);
+        if (completed && this.reporter != null) {
+            this.reporter.consumer().accept(result);
+        }
+
+        return completed;
+    }
+
+    /**
+     * Processes independent groups of the inputs one after another, each with its own fallback and all workers,
+     * handing over their outputs in input order.
+     *
+     * @return whether all groups ran to completion
+     */
+    private boolean processGroups(
+            List<Entry> inputs, List<int[]> groups, Consumer<? super Entry> sink,
+            LibraryPools.Lease libraries, Workers workers, Interruption interruption, ReportCollector report
+    ) {
+        final var outputs = new Entry[inputs.size()];
+        final var emitted = new int[1];
+        boolean completed = true;
+
+        for (final int[] group : groups) {
+            final List<Entry> groupInputs = new ArrayList<>(group.length);
+            for (final int i : group) {
+                groupInputs.add(inputs.get(i));
+            }
+
+            // each group finishes up on its own, without being stopped by the others
+            final Interruption groupInterruption = interruption.fork();
+            final var next = new int[1];
+            final boolean groupCompleted = this.processOrFallback(groupInputs, output -> {
+                outputs[group[next[0]++]] = output;
+
+                // hand over everything that's ready in order, the groups are interleaved
+                while (emitted[0] < outputs.length && outputs[emitted[0]] != null) {
+                    final Entry ready = outputs[emitted[0]];
+                    outputs[emitted[0]++] = null;
+                    sink.accept(ready);
+                }
+            }, libraries, workers.withCancellation(groupInterruption), groupInterruption, report);
+
+            completed &= groupCompleted;
+        }
+
+        return completed;
+    }
+
+    /**
+     * Processes the inputs, handing over the original entries if that's stopped
+     * and the fallback isn't {@link Fallback#FAIL}.
+     *
+     * @return whether the processing ran to completion
+     */
+    private boolean processOrFallback(
+            List<Entry> inputs, Consumer<? super Entry> sink,
+            LibraryPools.Lease libraries, Workers workers, Interruption interruption, ReportCollector report
+    ) {
+        try {
+            return this.process(inputs, sink, libraries, workers, interruption, report);
+        } catch (CancellationException e) {
+            if (this.fallback == Fallback.FAIL || !interruption.isCancelled()) {
+                throw e;
+            }
 
-            clazz.accept(new ProgramClassReader(new DataInputStream(new ByteArrayInputStream(entry.data()))));
+            // the processing can only be stopped before anything has been handed over
+            inputs.forEach(sink);
+            return false;
         }
+    }
+
+    /**
+     * Runs all stages of the analysis.
+     *
+     * @return whether the analysis ran to completion, rather than falling back to a snapshot of the completed passes
+     */
+    private boolean process(
+            List<Entry> inputs, Consumer<? super Entry> sink,
+            LibraryPools.Lease libraries, Workers workers, Interruption interruption, ReportCollector report
+    ) {
+        final List<Integer> indices = indices(inputs.size());
+
+        final var classes = new ProgramClass[inputs.size()];
+        final var checksums = new Checksum[inputs.size()];
+        final var hashes = new long[inputs.size()];
+        final var features = new ClassScanner.Features[inputs.size()];
+        stage(report, interruption, "Reading classes", classes.length, () -> Tasks.map(indices, workers, i -> {
+            final Input input = read(inputs.get(i), report);
 
-        final var pool = new ClassPool(classes.values());
-        final var view = new AppView(pool, new ClassPool());
+            classes[i] = input.clazz();
+            checksums[i] = input.checksum();
+            hashes[i] = input.hash();
+            features[i] = input.features();
+            return input;
+        }));
+
+        final Program loaded = this.load(classes, features, libraries, report, interruption);
 
         final boolean willOptimize = config.optimize && config.optimizationPasses > 0;
-        if (config.preverify || willOptimize) {
-            new PreverificationClearer().execute(view);
+        final boolean transforms = config.preverify || willOptimize;
+
+        if (transforms) {
+            stage(report, interruption, "Clearing preverification", loaded.codeView().programClassPool.size(), () -> executeChunked(loaded.codeView(), workers, view -> new PreverificationClearer().execute(view)));
+        }
+
+        if (config.preverify && loaded.subroutineView().programClassPool.size() > 0) {
+            stage(report, interruption, "Inlining subroutines", loaded.subroutineView().programClassPool.size(), () -> executeChunked(loaded.subroutineView(), workers, view -> new SubroutineInliner(config).execute(view)));
+        }
+        // primitive array constants are only ever introduced into classes with newarray instructions,
+        // but they can be inlined into any class
+        final boolean arrayConstants = willOptimize && loaded.newArrayView().programClassPool.size() > 0;
+        if (arrayConstants) {
+            stage(report, interruption, "Introducing primitive array constants", loaded.newArrayView().programClassPool.size(), () -> executeChunked(loaded.newArrayView(), workers, view -> new PrimitiveArrayConstantIntroducer().execute(view)));
+        }
+
+        final Program restored = willOptimize ? this.optimize(loaded, classes, features, libraries, report, workers, interruption) : null;
+        final Program program = restored != null ? restored : loaded;
+        if (willOptimize && this.fallback == Fallback.PARTIAL) {
+            // the completed passes are to be handed over now, finishing up can't be stopped anymore
+            interruption.disarm();
+        }
+
+        int methods = 0;
+        for (final ProgramClass clazz : classes) {
+            methods += clazz.u2methodsCount;
+        }
+        report.classes(classes.length, methods);
+
+        // only hold onto the classes that haven't been written yet
+        final ClassPool libraryPool = program.view().libraryClassPool;
+        program.clear();
+
+        // the finishing steps only change the class they run on, so they run right before the class is written,
+        // while it's still in cache, rather than in separate sweeps over all classes
+        stage(report, interruption, transforms ? "Finishing and writing classes" : "Writing classes", classes.length, () -> Tasks.map(indices, workers, i -> {
+            final ProgramClass clazz = classes[i];
+            classes[i] = null;
+
+            if (!transforms) {
+                // nothing could have changed the class, hand over the original
+                report.output(checksums[i].size());
+                return inputs.get(i);
+            }
+
+            this.finish(clazz, features[i], libraryPool, willOptimize, arrayConstants);
+            if (ClassHash.of(clazz) == hashes[i]) {
+                // structurally the same as it was read, don't bother writing it
+                report.output(checksums[i].size());
+                return inputs.get(i);
+            }
+
+            return write(inputs.get(i), clazz, checksums[i], report);
+        }, sink));
+
+        return restored == null;
+    }
+
+    /**
+     * Runs an analysis stage, unless the analysis has been stopped.
+     */
+    private static void stage(ReportCollector report, Cancellation cancellation, String name, int classes, Runnable stage) {
+        cancellation.check();
+        report.stage(name, classes, stage);
+    }
+
+    /**
+     * The size and CRC of a class file, for telling whether a class has been written back unchanged.
+     */
+    private record Checksum(int size, long crc) {
+        static Checksum of(byte[] data) {
+            final var crc = new CRC32();
+            crc.update(data);
+
+            return new Checksum(data.length, crc.getValue());
+        }
+    }
+
+    /**
+     * @param hash the {@link ClassHash} of the class as it was read
+     */
+    private record Input(ProgramClass clazz, Checksum checksum, long hash, ClassScanner.Features features) {
+    }
+
+    /**
+     * The program classes of an analysis, along with the views of them that the individual stages work on.
+     */
+    private record Program(ClassPool pool, AppView view, AppView codeView, AppView subroutineView, AppView newArrayView) {
+        void clear() {
+            this.pool.clear();
+            this.codeView.programClassPool.clear();
+            this.subroutineView.programClassPool.clear();
+            this.newArrayView.programClassPool.clear();
+        }
+    }
+
+    /**
+     * Thrown past the cache and the incremental state by stopped analyses, so their results aren't persisted.
+     */
+    private static final class Stopped extends RuntimeException {
+        private final Map<Entry, Entry> results = new IdentityHashMap<>();
+
+        Stopped(List<Entry> inputs, List<Entry> outputs) {
+            super(null, null, false, false);
+
+            for (int i = 0; i < inputs.size(); i++) {
+                this.results.put(inputs.get(i), outputs.get(i));
+            }
         }
+    }
+
+    /**
+     * Puts the classes into pools, linked against the libraries.
+     */
+    private Program load(
+            ProgramClass[] classes, ClassScanner.Features[] features,
+            LibraryPools.Lease libraries, ReportCollector report, Cancellation cancellation
+    ) {
+        final var pool = new ClassPool(Arrays.asList(classes));
+        final ClassPool libraryPool = libraries.pool();
 
-        if (config.preverify) {
-            new SubroutineInliner(config).execute(view);
+        if (!this.library.isEmpty()) {
+            // link the program classes against the library classes, so the optimizer can see across library calls
+            stage(report, cancellation, "Initializing library references", classes.length, () -> libraries.link(pool));
         }
-        if (willOptimize) {
-            new PrimitiveArrayConstantIntroducer().execute(view);
-            this.optimize(view);
+
+        // the code-level stages only get to see the classes they can do something for
+        return new Program(
+                pool,
+                new AppView(pool, libraryPool),
+                subset(classes, features, ClassScanner.Features.HAS_CODE, libraryPool),
+                subset(classes, features, ClassScanner.Features.HAS_SUBROUTINES, libraryPool),
+                subset(classes, features, ClassScanner.Features.HAS_NEWARRAY, libraryPool)
+        );
+    }
+
+    /**
+     * Runs the class-local steps that follow the optimization on a single class.
+     */
+    private void finish(ProgramClass clazz, ClassScanner.Features features, ClassPool libraryPool, boolean optimized, boolean arrayConstants) {
+        final boolean code = features.has(ClassScanner.Features.HAS_CODE);
+        final var view = new AppView(new ClassPool(List.of(clazz)), libraryPool);
+
+        if (optimized && code) {
             new LineNumberLinearizer().execute(view);
-            pool.classesAccept(new PrimitiveArrayConstantReplacer());
         }
-        if (config.preverify) {
+        if (arrayConstants) {
+            clazz.accept(new PrimitiveArrayConstantReplacer());
+        }
+        if (config.preverify && code) {
             new Preverifier(config).execute(view);
         }
-
-        if (config.preverify || willOptimize) {
+        if (code) {
             new LineNumberTrimmer().execute(view);
         }
+    }
+
+    /**
+     * Runs a pass that only changes the classes it visits on chunks of the view's program classes in parallel.
+     * <p>
+     * Each chunk gets its own class pool and pass instance, so the evaluators and frames of the pass
+     * aren't shared between workers. Classes are dealt out round-robin, so large classes next to each other
+     * in the pool end up in different chunks.
+     */
+    private static void executeChunked(AppView view, Workers workers, Consumer<AppView> pass) {
+        final ClassPool pool = view.programClassPool;
+        final int count = Math.min(pool.size(), workers.parallelism() * CHUNKS_PER_THREAD);
+        if (count <= 1 || workers.parallelism() <= 1) {
+            pass.accept(view);
+            return;
+        }
+
+        final List<ClassPool> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new ClassPool());
+        }
+
+        int i = 0;
+        for (final Clazz clazz : pool.classes()) {
+            chunks.get(i++ % count).addClass(clazz);
+        }
+
+        Tasks.map(chunks, workers, chunk -> {
+            pass.accept(new AppView(chunk, view.libraryClassPool));
+            return chunk;
+        });
+    }
+
+    /**
+     * Returns a view of only the program classes with the given feature.
+     */
+    private static AppView subset(ProgramClass[] classes, ClassScanner.Features[] features, int feature, ClassPool libraryPool) {
+        final var pool = new ClassPool();
+        for (int i = 0; i < classes.length; i++) {
+            if (features[i].has(feature)) {
+                pool.addClass(classes[i]);
+            }
+        }
+
+        return new AppView(pool, libraryPool);
+    }
+
+    private static Input read(Entry entry, ReportCollector report) {
+        try {
+            final Tracer.ClassTrace trace = report.tracer().classStarted(Tracer.ClassTrace.READ, entry.name());
+
+            final byte[] data = entry.data();
+            report.input(data.length);
+
+            final ProgramClass clazz = parse(data);
+
+            trace.finished(data.length);
+
+            return new Input(clazz, Checksum.of(data), ClassHash.of(clazz), ClassScanner.features(data));
+        } catch (RuntimeException e) {
+            throw new AnalysisException(entry.name(), "Failed to read class", e);
+        }
+    }
+
+    private static ProgramClass parse(byte[] data) {
+        final var clazz = new ProgramClass();
+        clazz.accept(new ProgramClassReader(new DataInputStream(new ByteArrayInputStream(data))));
+
+        return clazz;
+    }
+
+    private static byte[] serialize(ProgramClass clazz, int sizeHint) {
+        final var output = new ByteArrayOutputStream(sizeHint);
+        clazz.accept(new ProgramClassWriter(new DataOutputStream(output)));
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes the class, handing over the original entry instead if the class is still written back byte-for-byte.
+     */
+    private static Entry write(Entry entry, ProgramClass clazz, Checksum checksum, ReportCollector report) {
+        try {
+            final Tracer.ClassTrace trace = report.tracer().classStarted(Tracer.ClassTrace.WRITE, entry.name());
+
+            final byte[] data = serialize(clazz, checksum.size());
+            report.output(data.length);
+
+            trace.finished(data.length);
 
-        return classes.entrySet()
-                .stream()
-                .map(e -> {
-                    final var output = new ByteArrayOutputStream();
-                    e.getValue().accept(new ProgramClassWriter(new DataOutputStream(output)));
+            // only look at the original data if it's likely to be the same, it might be expensive to get again
+            if (checksum.equals(Checksum.of(data)) && Arrays.equals(data, entry.data())) {
+                return entry;
+            }
 
-                    return e.getKey().withData(output.toByteArray());
-                })
-                .toList();
+            return entry.withData(data);
+        } catch (RuntimeException e) {
+            throw new AnalysisException(entry.name(), "Failed to write class", e);
+        }
     }
 
-    private void optimize(AppView view) {
-        final var optimizer = new Optimizer(config);
-        for (int i = 0; i < config.optimizationPasses; i++) {
-            try {
-                optimizer.execute(view);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+    /**
+     * Runs the optimization passes.
+     * <p>
+     * With the {@link Fallback#PARTIAL} fallback, the classes are saved before every pass,
+     * and they're restored from there if a pass is stopped.
+     *
+     * @return the restored program, {@code null} if all passes were completed
+     */
+    private @Nullable Program optimize(
+            Program program, ProgramClass[] classes, ClassScanner.Features[] features,
+            LibraryPools.Lease libraries, ReportCollector report, Workers workers, Interruption interruption
+    ) {
+        final boolean partial = this.fallback == Fallback.PARTIAL;
+
+        final var optimizer = new Optimizer(config, this.optimizations, this.methodBudget, report, workers);
+        byte[][] snapshot = null;
+        try {
+            for (int i = 0; i < config.optimizationPasses; i++) {
+                if (partial) {
+                    snapshot = snapshot(classes, report, workers, interruption);
+                }
+
+                try {
+                    optimizer.execute(program.view());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        } catch (CancellationException e) {
+            if (snapshot == null || !interruption.isCancelled()) {
+                throw e;
             }
+
+            interruption.disarm();
+
+            final byte[][] saved = snapshot;
+            stage(report, interruption, "Restoring snapshot", classes.length, () -> Tasks.map(indices(classes.length), workers, i -> {
+                classes[i] = parse(saved[i]);
+                return null;
+            }));
+
+            return this.load(classes, features, libraries, report, interruption);
+        }
+
+        return null;
+    }
+
+    private static byte[][] snapshot(ProgramClass[] classes, ReportCollector report, Workers workers, Cancellation cancellation) {
+        final var snapshot = new byte[classes.length][];
+        stage(report, cancellation, "Saving snapshot", classes.length, () -> Tasks.map(indices(classes.length), workers, i -> {
+            snapshot[i] = serialize(classes[i], 1024);
+            return null;
+        }));
+
+        return snapshot;
+    }
+
+    private static List<Integer> indices(int size) {
+        final var indices = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            indices.add(i);
         }
+
+        return indices;
     }
 
     static final class Builder implements Analyzer.Builder {
@@ -84,6 +589,17 @@ record AnalyzerImpl(Configuration config) implements Analyzer {
         private boolean verify = false;
         private boolean optimize = false;
         private boolean inline = false;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private @Nullable Executor executor = null;
+        private boolean partition = false;
+        private long timeout = 0;
+        private Fallback fallback = Fallback.FAIL;
+        private MethodBudget methodBudget = MethodBudget.UNLIMITED;
+        private final List<LibraryImpl> libraries = new ArrayList<>();
+        private @Nullable Cache cache = null;
+        private @Nullable IncrementalState incremental = null;
+        private ReportCollector.@Nullable Reporter reporter = null;
+        private Supplier<Tracer> tracer = () -> Tracer.NONE;
 
         Builder() {
         }
@@ -116,6 +632,91 @@ record AnalyzerImpl(Configuration config) implements Analyzer {
             return this;
         }
 
+        @Override
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads < 1");
+            }
+
+            this.threads = threads;
+            return this;
+        }
+
+        @Override
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        @Override
+        public Builder methodBudget(int maxInstructions, int maxEvaluations, long maxTimeMillis) {
+            if (maxTimeMillis < 0) {
+                throw new IllegalArgumentException("maxTimeMillis < 0");
+            }
+
+            this.methodBudget = new MethodBudget(maxInstructions, maxEvaluations, maxTimeMillis * 1_000_000L);
+            return this;
+        }
+
+        @Override
+        public Builder partition(boolean partition) {
+            this.partition = partition;
+            return this;
+        }
+
+        @Override
+        public Builder timeout(long timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("timeoutMillis < 0");
+            }
+
+            this.timeout = timeoutMillis;
+            return this;
+        }
+
+        @Override
+        public Builder fallback(Fallback fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        @Override
+        public Builder libraries(Library... libraries) {
+            for (final Library library : libraries) {
+                this.libraries.add((LibraryImpl) library);
+            }
+
+            return this;
+        }
+
+        @Override
+        public Builder cache(Path directory, long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize < 0");
+            }
+
+            this.cache = new DirectoryCache(directory, maxSize);
+            return this;
+        }
+
+        @Override
+        public Builder incremental(Path stateFile) {
+            this.incremental = new IncrementalState(stateFile);
+            return this;
+        }
+
+        @Override
+        public Builder reporter(Consumer<? super Report> reporter) {
+            this.reporter = new ReportCollector.Reporter(reporter);
+            return this;
+        }
+
+        @Override
+        public Builder events(boolean events) {
+            this.tracer = events ? JfrTracer::new : () -> Tracer.NONE;
+            return this;
+        }
+
         @Override
         public Analyzer build() {
             final var config = new Configuration();
@@ -124,20 +725,13 @@ record AnalyzerImpl(Configuration config) implements Analyzer {
             config.preverify = this.verify;
             config.optimizationPasses = this.passes;
 
-            final List<String> optimizations = new ArrayList<>(List.of(
-                    "field/*",
-                    "method/generalization/*",
-                    "method/specialization/*",
-                    "method/propagation/*",
-                    "code/*"
-            ));
-
-            if (this.inline) {
-                optimizations.add("method/inlining/*");
-            }
+            final List<String> optimizations = Optimizations.filter(this.inline);
             config.optimizations = optimizations;
 
-            return new AnalyzerImpl(config);
+            return new AnalyzerImpl(
+                    config, Optimizations.parse(optimizations), this.methodBudget, this.threads, this.executor, this.partition, this.timeout, this.fallback,
+                    LibraryImpl.combine(this.libraries), this.cache, this.incremental, this.reporter, this.tracer
+            );
         }
     }
 }
@@ -0,0 +1,13 @@
+package run.slicer.poke;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+interface Cache {
+    /**
+     * Returns the cached result for the inputs, computing and storing it on a miss.
+     *
+     * @param fingerprint a normalized description of everything besides the inputs that affects the result
+     */
+    List<? extends Entry> compute(String fingerprint, List<? extends Entry> inputs, Supplier<List<? extends Entry>> analysis);
+}
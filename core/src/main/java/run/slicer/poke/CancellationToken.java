@@ -0,0 +1,21 @@
+package run.slicer.poke;
+
+/**
+ * A token for cancelling analyses from another thread.
+ * <p>
+ * Cancellation is cooperative - it's checked between analysis stages and between classes in parallel stages,
+ * so an analysis may take a moment to actually stop. A token can be shared by any number of analyses.
+ *
+ * @see Analyzer#analyze(Iterable, java.util.function.Consumer, CancellationToken)
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+}
@@ -0,0 +1,294 @@
+package run.slicer.poke;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A cheap scanner of raw class files, which doesn't build a {@code ProgramClass}.
+ */
+final class ClassScanner {
+    private ClassScanner() {
+    }
+
+    /**
+     * @param name       the internal name of the class
+     * @param references the internal names of all classes possibly referenced by the class (over-approximated)
+     */
+    record Info(String name, Set<String> references) {
+    }
+
+    /**
+     * Features of a class, for skipping stages that can't do anything for it.
+     *
+     * @param flags the {@code HAS_*} flags of the features present in the class
+     */
+    record Features(int flags) {
+        static final int HAS_CODE = 1;
+        static final int HAS_SUBROUTINES = 1 << 1;
+        static final int HAS_NEWARRAY = 1 << 2;
+
+        /**
+         * All features, for classes that couldn't be scanned, so no stage is skipped for them.
+         */
+        static final Features ALL = new Features(HAS_CODE | HAS_SUBROUTINES | HAS_NEWARRAY);
+
+        boolean has(int flag) {
+            return (this.flags & flag) != 0;
+        }
+    }
+
+    private static final byte[] CODE = "Code".getBytes(StandardCharsets.US_ASCII);
+
+    // instruction lengths by opcode, 0 for variable-length and unknown instructions
+    private static final byte[] INSTRUCTION_LENGTHS = new byte[256];
+
+    static {
+        Arrays.fill(INSTRUCTION_LENGTHS, 0x00, 0xca, (byte) 1);
+        INSTRUCTION_LENGTHS[0x10] = 2; // bipush
+        INSTRUCTION_LENGTHS[0x11] = 3; // sipush
+        INSTRUCTION_LENGTHS[0x12] = 2; // ldc
+        INSTRUCTION_LENGTHS[0x13] = 3; // ldc_w
+        INSTRUCTION_LENGTHS[0x14] = 3; // ldc2_w
+        Arrays.fill(INSTRUCTION_LENGTHS, 0x15, 0x1a, (byte) 2); // loads
+        Arrays.fill(INSTRUCTION_LENGTHS, 0x36, 0x3b, (byte) 2); // stores
+        INSTRUCTION_LENGTHS[0x84] = 3; // iinc
+        Arrays.fill(INSTRUCTION_LENGTHS, 0x99, 0xa9, (byte) 3); // branches, goto, jsr
+        INSTRUCTION_LENGTHS[0xa9] = 2; // ret
+        INSTRUCTION_LENGTHS[0xaa] = 0; // tableswitch
+        INSTRUCTION_LENGTHS[0xab] = 0; // lookupswitch
+        Arrays.fill(INSTRUCTION_LENGTHS, 0xb2, 0xb9, (byte) 3); // field accesses, invocations
+        INSTRUCTION_LENGTHS[0xb9] = 5; // invokeinterface
+        INSTRUCTION_LENGTHS[0xba] = 5; // invokedynamic
+        INSTRUCTION_LENGTHS[0xbb] = 3; // new
+        INSTRUCTION_LENGTHS[0xbc] = 2; // newarray
+        INSTRUCTION_LENGTHS[0xbd] = 3; // anewarray
+        INSTRUCTION_LENGTHS[0xc0] = 3; // checkcast
+        INSTRUCTION_LENGTHS[0xc1] = 3; // instanceof
+        INSTRUCTION_LENGTHS[0xc4] = 0; // wide
+        INSTRUCTION_LENGTHS[0xc5] = 4; // multianewarray
+        INSTRUCTION_LENGTHS[0xc6] = 3; // ifnull
+        INSTRUCTION_LENGTHS[0xc7] = 3; // ifnonnull
+        INSTRUCTION_LENGTHS[0xc8] = 5; // goto_w
+        INSTRUCTION_LENGTHS[0xc9] = 5; // jsr_w
+    }
+
+    /**
+     * Scans the constant pool and the code of the methods for the features of a class, in a single pass over the data.
+     * <p>
+     * Classes the scanner doesn't understand (e.g. constant pool tags or opcodes of newer class file versions)
+     * are assumed to have all features, the stages skipped otherwise do the full parsing of their own.
+     */
+    static Features features(byte[] data) {
+        try {
+            return features0(data);
+        } catch (RuntimeException e) {
+            return Features.ALL;
+        }
+    }
+
+    private static Features features0(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != 0xcafebabe) {
+            throw new IllegalArgumentException("Invalid class file magic");
+        }
+        buffer.position(buffer.position() + 4); // minor, major version
+
+        int flags = 0;
+        // obfuscated classes may have several "Code" constants, attributes can use any of them
+        final var codeIndices = new BitSet();
+
+        final int count = buffer.getShort() & 0xffff;
+        for (int i = 1; i < count; i++) {
+            final int tag = buffer.get() & 0xff;
+            switch (tag) {
+                case 1 -> {
+                    final int length = buffer.getShort() & 0xffff;
+                    final int start = buffer.position();
+                    if (equals(data, start, length, CODE)) {
+                        codeIndices.set(i);
+                    }
+                    buffer.position(start + length);
+                }
+                case 7, 8, 16, 19, 20 -> skip(buffer, 2);
+                case 15 -> skip(buffer, 3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> skip(buffer, 4);
+                case 5, 6 -> {
+                    skip(buffer, 8);
+                    i++; // takes up two slots
+                }
+                default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        skip(buffer, 6); // access flags, this class, super class
+        skip(buffer, 2 * (buffer.getShort() & 0xffff)); // interfaces
+
+        final int fieldCount = buffer.getShort() & 0xffff;
+        for (int i = 0; i < fieldCount; i++) {
+            skip(buffer, 6); // access flags, name, descriptor
+            skipAttributes(buffer);
+        }
+
+        final int methodCount = buffer.getShort() & 0xffff;
+        for (int i = 0; i < methodCount; i++) {
+            skip(buffer, 6); // access flags, name, descriptor
+
+            final int attributeCount = buffer.getShort() & 0xffff;
+            for (int j = 0; j < attributeCount; j++) {
+                final int nameIndex = buffer.getShort() & 0xffff;
+                final int length = buffer.getInt();
+                final int start = buffer.position();
+
+                if (codeIndices.get(nameIndex)) {
+                    final int codeLength = buffer.getInt(start + 4); // after max stack, max locals
+                    flags |= Features.HAS_CODE | codeFeatures(data, start + 8, codeLength);
+                }
+                buffer.position(start + length);
+            }
+        }
+
+        return new Features(flags);
+    }
+
+    private static int codeFeatures(byte[] data, int offset, int length) {
+        int flags = 0;
+
+        int pc = 0;
+        while (pc < length) {
+            final int opcode = data[offset + pc] & 0xff;
+            switch (opcode) {
+                case 0xa8, 0xa9, 0xc9 -> flags |= Features.HAS_SUBROUTINES; // jsr, ret, jsr_w
+                case 0xbc -> flags |= Features.HAS_NEWARRAY;
+            }
+
+            final int instructionLength = INSTRUCTION_LENGTHS[opcode];
+            if (instructionLength != 0) {
+                pc += instructionLength;
+                continue;
+            }
+
+            final int padded = offset + ((pc + 4) & ~3); // operands are 4-byte aligned to the start of the code
+            switch (opcode) {
+                case 0xaa -> { // tableswitch
+                    final int low = readInt(data, padded + 4);
+                    final int high = readInt(data, padded + 8);
+                    pc = padded - offset + 12 + 4 * (high - low + 1);
+                }
+                case 0xab -> // lookupswitch
+                        pc = padded - offset + 8 + 8 * readInt(data, padded + 4);
+                case 0xc4 -> { // wide
+                    final int modified = data[offset + pc + 1] & 0xff;
+                    if (modified == 0xa9) {
+                        flags |= Features.HAS_SUBROUTINES; // wide ret
+                    }
+                    pc += modified == 0x84 ? 6 : 4; // iinc takes an additional constant
+                }
+                default -> throw new IllegalArgumentException("Unknown opcode " + opcode);
+            }
+        }
+
+        return flags;
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xffff;
+        for (int i = 0; i < count; i++) {
+            skip(buffer, 2); // name
+            skip(buffer, buffer.getInt());
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private static boolean equals(byte[] data, int offset, int length, byte[] expected) {
+        return length == expected.length && Arrays.equals(data, offset, offset + length, expected, 0, length);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 | (data[offset + 3] & 0xff);
+    }
+
+    static Info scan(byte[] data) {
+        try {
+            final var dis = new DataInputStream(new ByteArrayInputStream(data));
+            if (dis.readInt() != 0xcafebabe) {
+                throw new IOException("Invalid class file magic");
+            }
+            dis.skipBytes(4); // minor, major version
+
+            final int count = dis.readUnsignedShort();
+            final var utf8s = new String[count];
+            final var classes = new int[count];
+            final var strings = new int[count];
+
+            for (int i = 1; i < count; i++) {
+                final int tag = dis.readUnsignedByte();
+                switch (tag) {
+                    case 1 -> utf8s[i] = dis.readUTF();
+                    case 7 -> classes[i] = dis.readUnsignedShort();
+                    case 8 -> strings[i] = dis.readUnsignedShort();
+                    case 16, 19, 20 -> dis.skipBytes(2);
+                    case 15 -> dis.skipBytes(3);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> dis.skipBytes(4);
+                    case 5, 6 -> {
+                        dis.skipBytes(8);
+                        i++; // takes up two slots
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+
+            dis.skipBytes(2); // access flags
+            final String name = utf8s[classes[dis.readUnsignedShort()]];
+
+            final Set<String> references = new HashSet<>();
+            for (int i = 1; i < count; i++) {
+                if (classes[i] != 0) {
+                    final String className = utf8s[classes[i]];
+                    if (className.startsWith("[")) {
+                        addDescriptorReferences(className, references);
+                    } else {
+                        references.add(className);
+                    }
+                } else if (strings[i] != 0) {
+                    // classes accessed by reflection
+                    references.add(utf8s[strings[i]].replace('.', '/'));
+                } else if (utf8s[i] != null) {
+                    // descriptors and signatures, we don't track which UTF-8 entries are used as such
+                    addDescriptorReferences(utf8s[i], references);
+                }
+            }
+            references.remove(name);
+
+            return new Info(name, references);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addDescriptorReferences(String descriptor, Set<String> references) {
+        int start = descriptor.indexOf('L');
+        while (start != -1) {
+            int end = start + 1;
+            while (end < descriptor.length() && descriptor.charAt(end) != ';' && descriptor.charAt(end) != '<') {
+                end++;
+            }
+            if (end == descriptor.length()) {
+                break;
+            }
+
+            references.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+}
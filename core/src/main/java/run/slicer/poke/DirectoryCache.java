@@ -0,0 +1,256 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache of analysis results, stored as one file per result in a directory.
+ * <p>
+ * Files are written to a temporary file and atomically moved into place, so several processes can share a directory.
+ * The access time is tracked by touching the modification time on hits, the least recently used files
+ * are evicted once the directory grows over its size limit. Every entry carries a CRC, damaged files are misses.
+ * <p>
+ * The size of the directory is only listed once and then kept track of with the written files,
+ * it's listed again when that says the directory has grown over its limit, which also catches up with other processes.
+ * Temporary files left over by crashed processes are removed when listing, the ones that can't be count towards the size.
+ */
+final class DirectoryCache implements Cache {
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long UNKNOWN = -1;
+
+    /**
+     * The age of temporary files that are considered to be left over by crashed processes, rather than being written.
+     */
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * The share of the size limit evictions go down to, so not every following write has to list the directory again.
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong(UNKNOWN);
+
+    DirectoryCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public List<? extends Entry> compute(String fingerprint, List<? extends Entry> inputs, Supplier<List<? extends Entry>> analysis) {
+        final Path file = this.directory.resolve(key(fingerprint, inputs) + SUFFIX);
+
+        final List<? extends Entry> cached = this.read(file, inputs);
+        if (cached != null) {
+            return cached;
+        }
+
+        final List<? extends Entry> result = analysis.get();
+        final long written = this.write(file, result);
+
+        final long size = this.size.accumulateAndGet(written, (total, added) -> total == UNKNOWN ? UNKNOWN : total + added);
+        if (size == UNKNOWN || size > this.maxSize) {
+            this.evict();
+        }
+
+        return result;
+    }
+
+    private static String key(String fingerprint, List<? extends Entry> inputs) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update((VERSION + ";" + fingerprint).getBytes(StandardCharsets.UTF_8));
+        for (final Entry input : inputs) {
+            final String name = input.name();
+            final byte[] nameBytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            final byte[] data = input.data();
+
+            // length-prefix the fields, so adjacent entries can't be confused with each other
+            digest.update(intBytes(name != null ? nameBytes.length : -1));
+            digest.update(nameBytes);
+            digest.update(intBytes(data.length));
+            digest.update(data);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private @Nullable List<? extends Entry> read(Path file, List<? extends Entry> inputs) {
+        try (final var dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (dis.readInt() != inputs.size()) {
+                return null;
+            }
+
+            final List<Entry> result = new ArrayList<>(inputs.size());
+            for (final Entry input : inputs) {
+                final int length = dis.readInt();
+                if (length < 0) {
+                    return null;
+                }
+
+                final byte[] data = dis.readNBytes(length);
+                if (data.length != length || dis.readLong() != crc(data)) {
+                    return null;
+                }
+
+                result.add(input.withData(data));
+            }
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException | RuntimeException ignored) {
+            // missing, truncated, damaged or concurrently evicted, treat as a miss
+            return null;
+        }
+    }
+
+    private static long crc(byte[] data) {
+        final var crc = new CRC32();
+        crc.update(data);
+
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the result to the file.
+     *
+     * @return the size of the written file
+     */
+    private long write(Path file, List<? extends Entry> result) {
+        try {
+            Files.createDirectories(this.directory);
+
+            final Path temp = Files.createTempFile(this.directory, file.getFileName().toString(), TEMP_SUFFIX);
+            try {
+                try (final var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    dos.writeInt(result.size());
+                    for (final Entry entry : result) {
+                        final byte[] data = entry.data();
+
+                        dos.writeInt(data.length);
+                        dos.write(data);
+                        dos.writeLong(crc(data));
+                    }
+                }
+
+                final long size = Files.size(temp);
+
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                return size;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lists the directory and evicts the least recently used files if it's over the size limit,
+     * removing stale temporary files in any case.
+     */
+    private synchronized void evict() {
+        final List<Path> files;
+        try (final Stream<Path> stream = Files.list(this.directory)) {
+            files = stream.filter(p -> {
+                final String name = p.getFileName().toString();
+                return name.endsWith(SUFFIX) || name.endsWith(TEMP_SUFFIX);
+            }).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        record Item(Path path, long size, FileTime lastModified) {
+        }
+
+        final long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        final List<Item> items = new ArrayList<>(files.size());
+        long total = 0;
+        for (final Path path : files) {
+            try {
+                final var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+                if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    // temporary files that are still being written are neither counted nor evicted
+                    if (attrs.lastModifiedTime().toMillis() >= staleBefore || deleteStale(path)) {
+                        continue;
+                    }
+                }
+
+                items.add(new Item(path, attrs.size(), attrs.lastModifiedTime()));
+                total += attrs.size();
+            } catch (IOException ignored) {
+                // evicted by another process
+            }
+        }
+
+        if (total <= this.maxSize) {
+            this.size.set(total);
+            return;
+        }
+
+        final long target = (long) (this.maxSize * EVICTION_TARGET);
+
+        items.sort(Comparator.comparing(Item::lastModified));
+        for (final Item item : items) {
+            if (total <= target) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(item.path());
+            } catch (IOException ignored) {
+                // in use or already gone, try the next one
+                continue;
+            }
+            total -= item.size();
+        }
+
+        this.size.set(total);
+    }
+
+    /**
+     * Deletes a stale temporary file, returning whether it's gone.
+     */
+    private static boolean deleteStale(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException ignored) {
+            // still open somewhere, it's counted and evicted like any other file
+            return false;
+        }
+    }
+}
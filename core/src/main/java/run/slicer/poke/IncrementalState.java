@@ -0,0 +1,218 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.proguard.Workers;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Persisted state of a previous analysis, allowing only the changed part of the input to be analyzed again.
+ * <p>
+ * Whole-program facts (side effects, propagated constants, inlined code, specialized descriptors) can flow
+ * both from callers to callees and back, so a changed class invalidates its direct dependents: the classes
+ * referencing it and the classes it references, in either the previous or the current version of the input.
+ * The previous outputs of all other classes are reused.
+ * <p>
+ * The state is only persisted once the analysis has completed, a stopped analysis throws past it, so the outputs
+ * of a fallback are never stored, and the classes it covered are still compared against the last complete state.
+ */
+record IncrementalState(Path file) {
+    private static final int VERSION = 1;
+
+    private record ClassState(byte[] hash, Set<String> references, byte[] output) {
+    }
+
+    /**
+     * Analyzes the changed part of the input, calls sharing the same state are serialized.
+     *
+     * @param analysis the analysis of the changed part, throwing if it's stopped before completing
+     */
+    synchronized List<? extends Entry> analyze(
+            String fingerprint, List<Entry> inputs, Workers workers,
+            Function<List<Entry>, List<? extends Entry>> analysis
+    ) {
+        final List<ClassScanner.Info> infos = Tasks.map(inputs, workers, e -> {
+            try {
+                return ClassScanner.scan(e.data());
+            } catch (RuntimeException ex) {
+                throw new AnalysisException(e.name(), "Failed to scan class", ex);
+            }
+        });
+        final List<byte[]> hashes = Tasks.map(inputs, workers, e -> hash(e.data()));
+
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < infos.size(); i++) {
+            if (indices.put(infos.get(i).name(), i) != null) {
+                // duplicate class names, we can't tell which is which across runs
+                return analysis.apply(inputs);
+            }
+        }
+
+        final Map<String, ClassState> previous = this.read(fingerprint);
+        final var dirty = new BitSet(inputs.size());
+        if (previous == null) {
+            dirty.set(0, inputs.size());
+        } else {
+            // build an undirected reference graph between the program classes of the previous and the current input,
+            // references to anything else (JDK, libraries) would connect every class through hubs like java/lang/Object
+            final Set<String> program = new HashSet<>(indices.keySet());
+            program.addAll(previous.keySet());
+
+            final Map<String, Set<String>> graph = new HashMap<>();
+            for (final ClassScanner.Info info : infos) {
+                link(graph, program, info.name(), info.references());
+            }
+            previous.forEach((name, state) -> link(graph, program, name, state.references()));
+
+            final List<String> changed = new ArrayList<>();
+            for (int i = 0; i < infos.size(); i++) {
+                final ClassState state = previous.get(infos.get(i).name());
+                if (state == null || !Arrays.equals(state.hash(), hashes.get(i))) {
+                    changed.add(infos.get(i).name());
+                }
+            }
+            for (final String name : previous.keySet()) {
+                if (!indices.containsKey(name)) {
+                    changed.add(name); // removed
+                }
+            }
+
+            // only the direct dependents are analyzed again, with the classes referencing a changed class
+            // and the classes it references, a full closure would take in most of a well-connected program
+            for (final String name : changed) {
+                markDirty(dirty, indices, name);
+                for (final String neighbor : graph.getOrDefault(name, Set.of())) {
+                    markDirty(dirty, indices, neighbor);
+                }
+            }
+        }
+
+        final List<Entry> dirtyInputs = new ArrayList<>(dirty.cardinality());
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            dirtyInputs.add(inputs.get(i));
+        }
+        final List<? extends Entry> dirtyOutputs = dirtyInputs.isEmpty() ? List.of() : analysis.apply(dirtyInputs);
+
+        final List<Entry> outputs = new ArrayList<>(inputs.size());
+        final Map<String, ClassState> current = new LinkedHashMap<>();
+        int dirtyIndex = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            final ClassScanner.Info info = infos.get(i);
+
+            final Entry output = dirty.get(i)
+                    ? dirtyOutputs.get(dirtyIndex++)
+                    : inputs.get(i).withData(previous.get(info.name()).output());
+
+            outputs.add(output);
+            current.put(info.name(), new ClassState(hashes.get(i), info.references(), output.data()));
+        }
+
+        this.write(fingerprint, current);
+        return outputs;
+    }
+
+    private static void markDirty(BitSet dirty, Map<String, Integer> indices, String name) {
+        final Integer index = indices.get(name);
+        if (index != null) {
+            dirty.set(index);
+        }
+    }
+
+    private static void link(Map<String, Set<String>> graph, Set<String> program, String name, Set<String> references) {
+        for (final String reference : references) {
+            if (!program.contains(reference)) {
+                continue;
+            }
+
+            graph.computeIfAbsent(name, k -> new HashSet<>()).add(reference);
+            graph.computeIfAbsent(reference, k -> new HashSet<>()).add(name);
+        }
+    }
+
+    private static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private @Nullable Map<String, ClassState> read(String fingerprint) {
+        if (!Files.isRegularFile(this.file)) {
+            return null;
+        }
+
+        try (final var dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            if (dis.readInt() != VERSION || !dis.readUTF().equals(fingerprint)) {
+                return null;
+            }
+
+            final int count = dis.readInt();
+            final Map<String, ClassState> states = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                final String name = dis.readUTF();
+                final byte[] hash = dis.readNBytes(dis.readUnsignedByte());
+
+                final int referenceCount = dis.readInt();
+                final Set<String> references = new HashSet<>(referenceCount);
+                for (int j = 0; j < referenceCount; j++) {
+                    references.add(dis.readUTF());
+                }
+
+                states.put(name, new ClassState(hash, references, dis.readNBytes(dis.readInt())));
+            }
+
+            return states;
+        } catch (IOException ignored) {
+            // unreadable state, analyze everything again
+            return null;
+        }
+    }
+
+    private void write(String fingerprint, Map<String, ClassState> states) {
+        try {
+            final Path parent = this.file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+
+            final Path temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+            try {
+                try (final var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    dos.writeInt(VERSION);
+                    dos.writeUTF(fingerprint);
+
+                    dos.writeInt(states.size());
+                    for (final Map.Entry<String, ClassState> entry : states.entrySet()) {
+                        final ClassState state = entry.getValue();
+
+                        dos.writeUTF(entry.getKey());
+                        dos.writeByte(state.hash().length);
+                        dos.write(state.hash());
+
+                        dos.writeInt(state.references().size());
+                        for (final String reference : state.references()) {
+                            dos.writeUTF(reference);
+                        }
+
+                        dos.writeInt(state.output().length);
+                        dos.write(state.output());
+                    }
+                }
+
+                try {
+                    Files.move(temp, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package run.slicer.poke;
+
+import run.slicer.poke.proguard.Cancellation;
+
+/**
+ * The cancellation of a single analysis, by its token or its deadline, whichever comes first.
+ */
+final class Interruption implements Cancellation {
+    private final CancellationToken token;
+    private final long deadline;
+    private volatile boolean disarmed = false;
+
+    /**
+     * @param deadline the {@link System#nanoTime()} at which the analysis is cancelled, 0 for no deadline
+     */
+    private Interruption(CancellationToken token, long deadline) {
+        this.token = token;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param timeout the time after which the analysis is cancelled in nanoseconds, 0 for no deadline
+     */
+    static Interruption of(CancellationToken token, long timeout) {
+        return new Interruption(token, timeout > 0 ? System.nanoTime() + timeout : 0);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        if (this.disarmed) {
+            return false;
+        }
+
+        return this.token.isCancelled() || (this.deadline != 0 && System.nanoTime() - this.deadline >= 0);
+    }
+
+    /**
+     * Returns an interruption with the same token and deadline that can be disarmed separately.
+     */
+    Interruption fork() {
+        return new Interruption(this.token, this.deadline);
+    }
+
+    /**
+     * Stops any further cancellation, for finishing up the work that's left.
+     */
+    void disarm() {
+        this.disarmed = true;
+    }
+}
@@ -0,0 +1,151 @@
+package run.slicer.poke;
+
+import jdk.jfr.*;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Tracer} emitting Java Flight Recorder events, which are almost free if not enabled in a recording.
+ * <p>
+ * A tracer is shared by all groups of an analysis, and stages may be started on any thread,
+ * so the open stage events are kept per thread rather than in a single field.
+ */
+final class JfrTracer implements Tracer {
+    private final AnalysisEvent analysis = new AnalysisEvent();
+    private final Map<Thread, Deque<StageEvent>> stages = new ConcurrentHashMap<>();
+
+    @Override
+    public void analysisStarted() {
+        this.analysis.begin();
+    }
+
+    @Override
+    public void analysisFinished(Report report) {
+        this.analysis.end();
+        if (this.analysis.shouldCommit()) {
+            this.analysis.classes = report.classes();
+            this.analysis.methods = report.methods();
+            this.analysis.passes = report.passes().size();
+            this.analysis.inputSize = report.inputSize();
+            this.analysis.outputSize = report.outputSize();
+            this.analysis.commit();
+        }
+    }
+
+    @Override
+    public void stageStarted(int pass, String name, int classes) {
+        // disabled events are kept too, so they're finished in the right order
+        final var event = new StageEvent();
+        if (event.isEnabled()) {
+            event.pass = pass;
+            event.name = name;
+            event.classes = classes;
+            event.begin();
+        }
+
+        this.stages.computeIfAbsent(Thread.currentThread(), k -> new ArrayDeque<>()).push(event);
+    }
+
+    @Override
+    public void stageFinished(int pass, String name, long wallTime, long cpuTime) {
+        final Thread thread = Thread.currentThread();
+        final Deque<StageEvent> open = this.stages.get(thread);
+        if (open == null) {
+            return;
+        }
+
+        final StageEvent event = open.pop();
+        if (open.isEmpty()) {
+            this.stages.remove(thread);
+        }
+
+        if (event.isEnabled()) {
+            event.cpuTime = cpuTime;
+            event.commit();
+        }
+    }
+
+    @Override
+    public ClassTrace classStarted(String operation, @Nullable String name) {
+        final var event = new ClassEvent();
+        if (!event.isEnabled()) {
+            return ClassTrace.NONE;
+        }
+
+        event.operation = operation;
+        event.name = name;
+        event.begin();
+
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.size = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Name("run.slicer.poke.Analysis")
+    @Label("Analysis")
+    @Category("poke")
+    @Description("An analysis of a set of classes")
+    static final class AnalysisEvent extends Event {
+        @Label("Classes")
+        int classes;
+
+        @Label("Methods")
+        int methods;
+
+        @Label("Optimization Passes")
+        int passes;
+
+        @Label("Input Size")
+        @DataAmount
+        long inputSize;
+
+        @Label("Output Size")
+        @DataAmount
+        long outputSize;
+    }
+
+    @Name("run.slicer.poke.Stage")
+    @Label("Analysis Stage")
+    @Category("poke")
+    @Description("A single stage of an analysis, e.g. an optimizer stage in a pass")
+    static final class StageEvent extends Event {
+        @Label("Pass")
+        @Description("The 1-based optimization pass, 0 for stages outside the optimization passes")
+        int pass;
+
+        @Label("Name")
+        String name;
+
+        @Label("Classes")
+        int classes;
+
+        @Label("Process CPU Time")
+        @Timespan
+        long cpuTime;
+    }
+
+    @Name("run.slicer.poke.Class")
+    @Label("Class Processing")
+    @Category("poke")
+    @Description("Reading or writing a single class")
+    @StackTrace(false)
+    static final class ClassEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Entry Name")
+        @Nullable String name;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+}
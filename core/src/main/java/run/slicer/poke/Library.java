@@ -0,0 +1,102 @@
+package run.slicer.poke;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public interface Library {
+    static Library of(Iterable<? extends Entry> entries) {
+        return LibraryImpl.parse(entries);
+    }
+
+    static Library of(Path... paths) {
+        final List<Entry> entries = new ArrayList<>();
+        for (final Path path : paths) {
+            try {
+                if (Files.isDirectory(path)) {
+                    try (final Stream<Path> files = Files.walk(path)) {
+                        for (final Path file : (Iterable<Path>) files::iterator) {
+                            if (isClass(file.toString()) && Files.isRegularFile(file)) {
+                                entries.add(Entry.of(path.relativize(file).toString(), Files.readAllBytes(file)));
+                            }
+                        }
+                    }
+                } else if (path.toString().endsWith(".class")) {
+                    entries.add(Entry.of(path.getFileName().toString(), Files.readAllBytes(path)));
+                } else {
+                    try (final var zf = new ZipFile(path.toFile())) {
+                        for (final ZipEntry entry : Collections.list(zf.entries())) {
+                            if (!entry.isDirectory() && isClass(entry.getName())) {
+                                entries.add(Entry.of(entry.getName(), zf.getInputStream(entry).readAllBytes()));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return of(entries);
+    }
+
+    /**
+     * Combines libraries into one, classes of earlier libraries take precedence over those of later ones.
+     * <p>
+     * Analyzers keep the class pools they link against with the library, so analyzers built with the same
+     * (combined) library share them, rather than copying and linking all library classes for every analyzer.
+     */
+    static Library of(Library... libraries) {
+        final List<LibraryImpl> impls = new ArrayList<>(libraries.length);
+        for (final Library library : libraries) {
+            impls.add((LibraryImpl) library);
+        }
+
+        return LibraryImpl.combine(impls);
+    }
+
+    static Library runtime(String... modules) {
+        final Set<String> included = Set.of(modules);
+
+        final List<Entry> entries = new ArrayList<>();
+        try {
+            final FileSystem fs = FileSystems.getFileSystem(URI.create("jrt:/"));
+            try (final Stream<Path> moduleDirs = Files.list(fs.getPath("/modules"))) {
+                for (final Path moduleDir : (Iterable<Path>) moduleDirs::iterator) {
+                    if (!included.isEmpty() && !included.contains(moduleDir.getFileName().toString())) {
+                        continue;
+                    }
+
+                    try (final Stream<Path> files = Files.walk(moduleDir)) {
+                        for (final Path file : (Iterable<Path>) files::iterator) {
+                            if (isClass(file.toString()) && Files.isRegularFile(file)) {
+                                entries.add(Entry.of(moduleDir.relativize(file).toString(), Files.readAllBytes(file)));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return of(entries);
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/");
+    }
+
+    int size();
+}
@@ -0,0 +1,203 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+import proguard.classfile.ClassPool;
+import proguard.classfile.LibraryClass;
+import proguard.classfile.LibraryField;
+import proguard.classfile.LibraryMethod;
+import proguard.classfile.io.LibraryClassReader;
+import run.slicer.poke.proguard.Workers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only set of library classes, or a combination of such sets.
+ * <p>
+ * The classes are parsed on first use, with the workers of the analysis using them, and kept from then on.
+ * <p>
+ * The optimizer writes processing info, hierarchy links and references into library classes,
+ * so the parsed classes are never handed out directly - analyzers link shallow copies made
+ * via {@link #newPool(Workers)} once, and reuse them between analyses, see {@link LibraryPools}.
+ * The pools belong to the library, so all analyzers built with the same library share them.
+ */
+final class LibraryImpl implements Library {
+    /**
+     * The class files to be parsed, released once they are, {@code null} for combined libraries.
+     */
+    private @Nullable List<Entry> entries;
+    /**
+     * The combined libraries, {@code null} for parsed libraries.
+     */
+    private final @Nullable List<LibraryImpl> parts;
+    private final boolean empty;
+    private final String digest;
+    private final LibraryPools pools = new LibraryPools(this);
+    private @Nullable List<LibraryClass> classes = null;
+
+    private LibraryImpl(@Nullable List<Entry> entries, @Nullable List<LibraryImpl> parts, boolean empty, String digest) {
+        this.entries = entries;
+        this.parts = parts;
+        this.empty = empty;
+        this.digest = digest;
+    }
+
+    static LibraryImpl parse(Iterable<? extends Entry> entries) {
+        final List<Entry> inputs = new ArrayList<>();
+        entries.forEach(inputs::add);
+
+        return new LibraryImpl(inputs, null, inputs.isEmpty(), digest(inputs));
+    }
+
+    /**
+     * Combines libraries into one, classes of earlier libraries take precedence over those of later ones.
+     */
+    static LibraryImpl combine(List<LibraryImpl> libraries) {
+        if (libraries.size() == 1) {
+            return libraries.get(0);
+        }
+
+        boolean empty = true;
+        final var digests = new StringBuilder();
+        for (final LibraryImpl library : libraries) {
+            empty &= library.empty;
+            digests.append(library.digest).append(';');
+        }
+
+        // the order of the libraries matters, unlike the order of the classes within them
+        return new LibraryImpl(
+                null, List.copyOf(libraries), empty,
+                digest(List.of(Entry.of(null, digests.toString().getBytes(StandardCharsets.UTF_8))))
+        );
+    }
+
+    /**
+     * Returns the classes, parsing them with the given workers if that hasn't been done yet.
+     */
+    private synchronized List<LibraryClass> classes(Workers workers) {
+        if (this.classes != null) {
+            return this.classes;
+        }
+
+        if (this.parts == null) {
+            this.classes = List.copyOf(Tasks.map(this.entries, workers, LibraryImpl::read));
+            this.entries = null;
+        } else {
+            final List<LibraryClass> classes = new ArrayList<>();
+            final Set<String> names = new HashSet<>();
+            for (final LibraryImpl part : this.parts) {
+                for (final LibraryClass clazz : part.classes(workers)) {
+                    if (names.add(clazz.thisClassName)) {
+                        classes.add(clazz);
+                    }
+                }
+            }
+            this.classes = List.copyOf(classes);
+        }
+
+        return this.classes;
+    }
+
+    /**
+     * Returns whether the library has no classes, without parsing them.
+     */
+    boolean isEmpty() {
+        return this.empty;
+    }
+
+    String digest() {
+        return this.digest;
+    }
+
+    LibraryPools pools() {
+        return this.pools;
+    }
+
+    /**
+     * Computes an order-insensitive digest of the library contents, used for identifying the library in cache keys.
+     * <p>
+     * The hashes of the entries are sorted and hashed again, rather than combined, so duplicate entries still count.
+     */
+    private static String digest(List<Entry> inputs) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final var hashes = new byte[inputs.size()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = digest.digest(inputs.get(i).data());
+        }
+        Arrays.sort(hashes, Arrays::compare);
+
+        for (final byte[] hash : hashes) {
+            digest.update(hash);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static LibraryClass read(Entry entry) {
+        try {
+            final var clazz = new LibraryClass();
+            clazz.accept(new LibraryClassReader(new DataInputStream(new ByteArrayInputStream(entry.data())), false, true));
+
+            return clazz;
+        } catch (RuntimeException e) {
+            throw new AnalysisException(entry.name(), "Failed to read library class", e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.empty ? 0 : Tasks.withWorkers(null, Runtime.getRuntime().availableProcessors(), this::classes).size();
+    }
+
+    /**
+     * Copies the classes into a new pool, parsing them with the given workers if that hasn't been done yet.
+     */
+    ClassPool newPool(Workers workers) {
+        final var pool = new ClassPool();
+        for (final LibraryClass clazz : this.classes(workers)) {
+            // earlier classes take precedence over later ones
+            if (pool.getClass(clazz.thisClassName) == null) {
+                pool.addClass(copy(clazz));
+            }
+        }
+
+        return pool;
+    }
+
+    private static LibraryClass copy(LibraryClass clazz) {
+        final var copy = new LibraryClass();
+        copy.u2accessFlags = clazz.u2accessFlags;
+        copy.thisClassName = clazz.thisClassName;
+        copy.superClassName = clazz.superClassName;
+        copy.interfaceNames = clazz.interfaceNames;
+
+        copy.fields = new LibraryField[clazz.fields.length];
+        for (int i = 0; i < clazz.fields.length; i++) {
+            final LibraryField field = clazz.fields[i];
+            copy.fields[i] = new LibraryField(field.u2accessFlags, field.name, field.descriptor);
+        }
+
+        copy.methods = new LibraryMethod[clazz.methods.length];
+        for (int i = 0; i < clazz.methods.length; i++) {
+            final LibraryMethod method = clazz.methods[i];
+            copy.methods[i] = new LibraryMethod(method.u2accessFlags, method.name, method.descriptor);
+        }
+
+        return copy;
+    }
+}
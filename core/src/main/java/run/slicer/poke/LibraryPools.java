@@ -0,0 +1,150 @@
+package run.slicer.poke;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.LibraryClass;
+import proguard.classfile.ProgramClass;
+import proguard.classfile.util.ClassReferenceInitializer;
+import proguard.classfile.util.ClassSubHierarchyInitializer;
+import proguard.classfile.util.ClassSuperHierarchyInitializer;
+import proguard.classfile.visitor.ClassCleaner;
+import proguard.classfile.visitor.ClassVisitor;
+import run.slicer.poke.proguard.Workers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The library class pools of a library, copied and linked among themselves once, and then leased out to analyses.
+ * <p>
+ * The optimizer writes processing info into the library classes, and linking program classes adds them to the
+ * subclasses of library classes, so a pool can only be used by one analysis at a time. Pools are handed back and
+ * reused by later analyses, only analyses running at the same time get pools of their own.
+ */
+final class LibraryPools {
+    /**
+     * The amount of idle pools kept, pools handed back beyond that are dropped rather than kept for the next burst
+     * of concurrent analyses, as each holds a copy of all library classes.
+     */
+    private static final int MAX_IDLE = 4;
+
+    private final LibraryImpl library;
+    private final Deque<ClassPool> idle = new ArrayDeque<>();
+
+    LibraryPools(LibraryImpl library) {
+        this.library = library;
+    }
+
+    /**
+     * Leases a pool, copying and linking the library classes only if there's no idle one.
+     *
+     * @param workers the workers of the analysis, for parsing the library classes on first use
+     */
+    Lease acquire(Workers workers) {
+        ClassPool pool;
+        synchronized (this.idle) {
+            pool = this.idle.poll();
+        }
+
+        if (pool == null) {
+            pool = this.library.newPool(workers);
+
+            // the library classes only ever reference each other, program classes are only linked to them
+            final var none = new ClassPool();
+            pool.classesAccept(new ClassSuperHierarchyInitializer(none, pool));
+            pool.classesAccept(new ClassSubHierarchyInitializer());
+            pool.classesAccept(new ClassReferenceInitializer(none, pool));
+        }
+
+        return new Lease(pool);
+    }
+
+    /**
+     * A pool leased to a single analysis, handed back when closed.
+     */
+    final class Lease implements AutoCloseable {
+        private final ClassPool pool;
+
+        /**
+         * The library classes that have program classes among their subclasses.
+         */
+        private final Set<Clazz> extended = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Lease(ClassPool pool) {
+            this.pool = pool;
+        }
+
+        ClassPool pool() {
+            return this.pool;
+        }
+
+        /**
+         * Links program classes against the library classes, replacing previously linked ones.
+         */
+        void link(ClassPool programPool) {
+            this.unlink();
+
+            programPool.classesAccept(new ClassSuperHierarchyInitializer(programPool, this.pool));
+
+            // remember where program classes are about to be added as subclasses, so they can be removed again
+            programPool.classesAccept(new ClassVisitor() {
+                @Override
+                public void visitAnyClass(Clazz clazz) {
+                    extend(clazz.getSuperClass());
+                    for (int i = 0; i < clazz.getInterfaceCount(); i++) {
+                        extend(clazz.getInterface(i));
+                    }
+                }
+            });
+
+            programPool.classesAccept(new ClassSubHierarchyInitializer());
+            programPool.classesAccept(new ClassReferenceInitializer(programPool, this.pool));
+        }
+
+        private void extend(Clazz clazz) {
+            if (clazz instanceof LibraryClass) {
+                this.extended.add(clazz);
+            }
+        }
+
+        /**
+         * Removes the linked program classes from the subclasses of the library classes.
+         */
+        private void unlink() {
+            for (final Clazz clazz : this.extended) {
+                final List<Clazz> programClasses = new ArrayList<>();
+                clazz.subclassesAccept(new ClassVisitor() {
+                    @Override
+                    public void visitAnyClass(Clazz subClass) {
+                        if (subClass instanceof ProgramClass) {
+                            programClasses.add(subClass);
+                        }
+                    }
+                });
+
+                programClasses.forEach(clazz::removeSubClass);
+            }
+
+            this.extended.clear();
+        }
+
+        @Override
+        public void close() {
+            this.unlink();
+
+            // drop everything the optimizer has attached, it would keep the program classes alive
+            this.pool.classesAccept(new ClassCleaner());
+
+            synchronized (LibraryPools.this.idle) {
+                if (LibraryPools.this.idle.size() < MAX_IDLE) {
+                    LibraryPools.this.idle.push(this.pool);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package run.slicer.poke;
+
+import run.slicer.poke.proguard.Workers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an input into groups of classes that can be analyzed independently of each other.
+ * <p>
+ * Optimizations can only flow along references, so classes that aren't connected through references
+ * in either direction (e.g. the bundled libraries of a fat JAR) don't affect each other. The weakly connected
+ * components of the reference graph are packed into groups, which are analyzed separately and can be freed
+ * once written, bounding the amount of classes held at once.
+ */
+final class Partitions {
+    private Partitions() {
+    }
+
+    /**
+     * Splits the inputs into groups of input indices, largest first, with indices in input order within a group.
+     *
+     * @param target the preferred amount of classes in a group, components are never split up to stay below it
+     */
+    static List<int[]> split(List<Entry> inputs, Workers workers, int target) {
+        final List<ClassScanner.Info> infos = Tasks.map(inputs, workers, e -> {
+            try {
+                return ClassScanner.scan(e.data());
+            } catch (RuntimeException ex) {
+                throw new AnalysisException(e.name(), "Failed to scan class", ex);
+            }
+        });
+
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < infos.size(); i++) {
+            if (indices.put(infos.get(i).name(), i) != null) {
+                // duplicate class names, references can't be told apart
+                return List.of(all(inputs.size()));
+            }
+        }
+
+        // union-find over the input indices, references outside of the input (libraries) don't connect anything
+        final var parents = all(inputs.size());
+        for (int i = 0; i < infos.size(); i++) {
+            for (final String reference : infos.get(i).references()) {
+                final Integer j = indices.get(reference);
+                if (j != null) {
+                    union(parents, i, j);
+                }
+            }
+        }
+
+        final Map<Integer, List<Integer>> components = new HashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            components.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(i);
+        }
+        if (components.size() == 1) {
+            return List.of(all(inputs.size()));
+        }
+
+        final List<List<Integer>> sorted = new ArrayList<>(components.values());
+        sorted.sort(Comparator.comparingInt((List<Integer> c) -> c.size()).reversed());
+
+        // pack the components into groups of roughly the target size, largest first
+        final List<int[]> result = new ArrayList<>();
+        final List<Integer> current = new ArrayList<>();
+        for (final List<Integer> component : sorted) {
+            if (!current.isEmpty() && current.size() + component.size() > target) {
+                result.add(toSortedArray(current));
+                current.clear();
+            }
+            current.addAll(component);
+        }
+        if (!current.isEmpty()) {
+            result.add(toSortedArray(current));
+        }
+
+        result.sort(Comparator.comparingInt((int[] g) -> g.length).reversed());
+        return result;
+    }
+
+    private static int[] all(int size) {
+        final var indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+
+        return indices;
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]]; // path halving
+            i = parents[i];
+        }
+
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        final int rootA = find(parents, a), rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private static int[] toSortedArray(List<Integer> indices) {
+        final int[] array = indices.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(array);
+
+        return array;
+    }
+}
@@ -0,0 +1,50 @@
+package run.slicer.poke;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A summary of a single analysis.
+ *
+ * @param passes      the optimization counts of each optimization pass
+ * @param stages      the timings of all analysis stages, in execution order
+ * @param classes     the amount of analyzed classes
+ * @param methods     the amount of methods in the analyzed classes
+ * @param inputSize   the total size of the input class files in bytes
+ * @param outputSize  the total size of the output class files in bytes
+ * @param skipped     the methods left unoptimized for being over the method budget
+ */
+public record Report(
+        List<Pass> passes,
+        List<Stage> stages,
+        int classes,
+        int methods,
+        long inputSize,
+        long outputSize,
+        List<SkippedMethod> skipped
+) {
+    /**
+     * @param index    the 1-based pass index
+     * @param counters the optimization counts, keyed by optimization name (e.g. {@code code/simplification/branch})
+     */
+    public record Pass(int index, Map<String, Integer> counters) {
+    }
+
+    /**
+     * @param pass     the 1-based optimization pass index, 0 for stages outside the optimization passes
+     * @param name     the stage name
+     * @param wallTime the elapsed wall time in nanoseconds
+     * @param cpuTime  the process CPU time spent in nanoseconds, -1 if unavailable;
+     *                 includes any other work done by the process in the meantime
+     */
+    public record Stage(int pass, String name, long wallTime, long cpuTime) {
+    }
+
+    /**
+     * @param className the internal name of the class
+     * @param method    the method name and descriptor
+     * @param reason    a human-readable description of the exceeded limit
+     */
+    public record SkippedMethod(String className, String method, String reason) {
+    }
+}
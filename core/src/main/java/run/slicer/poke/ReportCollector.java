@@ -0,0 +1,128 @@
+package run.slicer.poke;
+
+import run.slicer.poke.proguard.StageListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+final class ReportCollector implements StageListener {
+    /**
+     * The CPU time of the process, or -1 if the platform doesn't provide it.
+     */
+    static final LongSupplier PROCESS_CPU_CLOCK = () -> {
+        final var os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean sunOs ? sunOs.getProcessCpuTime() : -1;
+    };
+    /**
+     * A clock for collectors that nothing reads the CPU times of.
+     */
+    static final LongSupplier NO_CPU_CLOCK = () -> -1;
+
+    private final LongSupplier cpuClock;
+    private final Tracer tracer;
+    private final List<Report.Pass> passes = new ArrayList<>();
+    private final List<Report.Stage> stages = new ArrayList<>();
+    private final List<Report.SkippedMethod> skipped = new ArrayList<>();
+    private int classes = 0;
+    private int methods = 0;
+    private long inputSize = 0;
+    private long outputSize = 0;
+
+    ReportCollector(LongSupplier cpuClock, Tracer tracer) {
+        this.cpuClock = cpuClock;
+        this.tracer = tracer;
+    }
+
+    Tracer tracer() {
+        return this.tracer;
+    }
+
+    @Override
+    public long cpuTime() {
+        return this.cpuClock.getAsLong();
+    }
+
+    @Override
+    public void stageStarted(int pass, String name, int classes) {
+        this.tracer.stageStarted(pass, name, classes);
+    }
+
+    @Override
+    public void stageFinished(int pass, String name, long wallTime, long cpuTime) {
+        synchronized (this) {
+            this.stages.add(new Report.Stage(pass, name, wallTime, cpuTime));
+        }
+        this.tracer.stageFinished(pass, name, wallTime, cpuTime);
+    }
+
+    @Override
+    public synchronized void passFinished(int pass, Map<String, Integer> counters) {
+        // independently optimized groups of classes each finish every pass, their counts are summed up
+        for (int i = 0; i < this.passes.size(); i++) {
+            final Report.Pass existing = this.passes.get(i);
+            if (existing.index() == pass) {
+                final Map<String, Integer> merged = new HashMap<>(existing.counters());
+                counters.forEach((name, count) -> merged.merge(name, count, Integer::sum));
+
+                this.passes.set(i, new Report.Pass(pass, Map.copyOf(merged)));
+                return;
+            }
+        }
+
+        this.passes.add(new Report.Pass(pass, Map.copyOf(counters)));
+    }
+
+    @Override
+    public synchronized void methodSkipped(String className, String method, String reason) {
+        this.skipped.add(new Report.SkippedMethod(className, method, reason));
+    }
+
+    /**
+     * Runs an analysis stage outside the optimization passes, recording its timing.
+     */
+    void stage(String name, int classes, Runnable stage) {
+        this.stageStarted(0, name, classes);
+
+        final long startWallTime = System.nanoTime();
+        final long startCpuTime = this.cpuTime();
+
+        // finish the stage even if it fails or is stopped, the tracer matches every started stage
+        try {
+            stage.run();
+        } finally {
+            final long endCpuTime = this.cpuTime();
+            this.stageFinished(0, name, System.nanoTime() - startWallTime,
+                    startCpuTime < 0 || endCpuTime < 0 ? -1 : endCpuTime - startCpuTime);
+        }
+    }
+
+    synchronized void classes(int classes, int methods) {
+        this.classes += classes;
+        this.methods += methods;
+    }
+
+    synchronized void input(long size) {
+        this.inputSize += size;
+    }
+
+    synchronized void output(long size) {
+        this.outputSize += size;
+    }
+
+    synchronized Report build() {
+        return new Report(List.copyOf(this.passes), List.copyOf(this.stages), this.classes, this.methods, this.inputSize, this.outputSize, List.copyOf(this.skipped));
+    }
+
+    /**
+     * The report configuration of an analyzer.
+     *
+     * @param consumer the consumer of finished reports
+     */
+    record Reporter(Consumer<? super Report> consumer) {
+    }
+}
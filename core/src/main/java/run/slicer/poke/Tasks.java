@@ -0,0 +1,139 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.proguard.Cancellation;
+import run.slicer.poke.proguard.Workers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+final class Tasks {
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private Tasks() {
+    }
+
+    static ExecutorService newPool(int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            final var thread = new Thread(r, "poke-worker-" + THREAD_ID.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the action with workers on the given executor, or on a temporary pool if there's none.
+     * <p>
+     * The calling thread is one of the workers, so a temporary pool only needs {@code threads - 1} threads.
+     */
+    static <R> R withWorkers(@Nullable Executor executor, int threads, Function<Workers, R> action) {
+        return withWorkers(executor, threads, Cancellation.NONE, action);
+    }
+
+    /**
+     * Runs the action like {@link #withWorkers(Executor, int, Function)}, with workers checking the given cancellation.
+     */
+    static <R> R withWorkers(@Nullable Executor executor, int threads, Cancellation cancellation, Function<Workers, R> action) {
+        if (executor != null) {
+            return action.apply(new Workers(executor, threads, cancellation));
+        }
+        if (threads <= 1) {
+            return action.apply(new Workers(Runnable::run, 1, cancellation));
+        }
+
+        final ExecutorService pool = newPool(threads - 1);
+        try {
+            return action.apply(new Workers(pool, threads, cancellation));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Maps the items in parallel, keeping the input order in the result.
+     */
+    static <T, R> List<R> map(List<T> items, Workers workers, Function<? super T, ? extends R> fn) {
+        final List<R> results = new ArrayList<>(items.size());
+        map(items, workers, fn, results::add);
+
+        return results;
+    }
+
+    /**
+     * Maps the items in parallel, handing the results to the sink in input order as soon as they're available.
+     * <p>
+     * Workers pull the next item index from a shared counter, so a few large items don't hold up the rest.
+     * The sink is never invoked concurrently and results are released right after being handed over,
+     * so only the results finished ahead of an unfinished item are held at once.
+     * Failures are reported per item and rethrown together once all items have been processed.
+     */
+    @SuppressWarnings("unchecked")
+    static <T, R> void map(List<T> items, Workers workers, Function<? super T, ? extends R> fn, Consumer<? super R> sink) {
+        final int size = items.size();
+        final var results = (R[]) new Object[size];
+        final var errors = new RuntimeException[size];
+        final var done = new boolean[size];
+
+        final var index = new AtomicInteger();
+        final var emitted = new int[1];
+        workers.run(() -> {
+            int i;
+            while ((i = index.getAndIncrement()) < size) {
+                R result = null;
+                RuntimeException error = null;
+                try {
+                    result = fn.apply(items.get(i));
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+
+                synchronized (done) {
+                    results[i] = result;
+                    errors[i] = error;
+                    done[i] = true;
+
+                    // hand over everything that's ready in order
+                    while (emitted[0] < size && done[emitted[0]]) {
+                        final int next = emitted[0]++;
+                        if (errors[next] == null) {
+                            try {
+                                sink.accept(results[next]);
+                            } catch (RuntimeException e) {
+                                errors[next] = e;
+                            }
+                        }
+                        results[next] = null;
+                    }
+                }
+            }
+        });
+
+        rethrow(errors);
+    }
+
+    private static void rethrow(RuntimeException[] errors) {
+        RuntimeException first = null;
+        for (final RuntimeException error : errors) {
+            if (error == null) {
+                continue;
+            }
+
+            if (first == null) {
+                first = error;
+            } else {
+                first.addSuppressed(error);
+            }
+        }
+
+        if (first != null) {
+            throw first;
+        }
+    }
+}
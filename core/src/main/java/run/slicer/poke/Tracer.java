@@ -0,0 +1,32 @@
+package run.slicer.poke;
+
+import org.jspecify.annotations.Nullable;
+import run.slicer.poke.proguard.StageListener;
+
+/**
+ * A sink for tracing events of a single analysis.
+ */
+interface Tracer extends StageListener {
+    Tracer NONE = new Tracer() {
+    };
+
+    default void analysisStarted() {
+    }
+
+    default void analysisFinished(Report report) {
+    }
+
+    default ClassTrace classStarted(String operation, @Nullable String name) {
+        return ClassTrace.NONE;
+    }
+
+    interface ClassTrace {
+        String READ = "read";
+        String WRITE = "write";
+
+        ClassTrace NONE = size -> {
+        };
+
+        void finished(long size);
+    }
+}
@@ -0,0 +1,28 @@
+package run.slicer.poke.proguard;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A signal for stopping work early, checked by the {@link Optimizer} between its stages
+ * and by {@link ParallelAllClassVisitor}s between classes.
+ * <p>
+ * Work that has been stopped leaves the class pools in an inconsistent state, they shouldn't be used anymore.
+ */
+@FunctionalInterface
+public interface Cancellation {
+    /**
+     * Never cancels.
+     */
+    Cancellation NONE = () -> false;
+
+    boolean isCancelled();
+
+    /**
+     * Throws a {@link CancellationException} if the work has been cancelled.
+     */
+    default void check() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ProgramClass;
+import proguard.classfile.ProgramField;
+import proguard.classfile.ProgramMethod;
+import proguard.classfile.attribute.Attribute;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.attribute.ExceptionInfo;
+import proguard.classfile.constant.*;
+
+/**
+ * A structural hash of a program class, over its constant pool, members, code and the kinds of its attributes.
+ * <p>
+ * It's cheap compared to writing the class, so it's used for telling whether a class has been changed at all,
+ * both between optimization passes and before writing.
+ */
+public final class ClassHash {
+    private ClassHash() {
+    }
+
+    /**
+     * Returns the structural hash of the class.
+     */
+    public static long of(ProgramClass clazz) {
+        long hash = clazz.u2accessFlags;
+        hash = 31 * hash + clazz.u2constantPoolCount;
+
+        for (int i = 1; i < clazz.u2constantPoolCount; i++) {
+            hash = 31 * hash + hash(clazz.constantPool[i]);
+        }
+
+        hash = 31 * hash + hash(clazz.u2attributesCount, clazz.attributes);
+
+        for (int i = 0; i < clazz.u2fieldsCount; i++) {
+            final ProgramField field = clazz.fields[i];
+            hash = 31 * hash + field.u2accessFlags;
+            hash = 31 * hash + field.u2nameIndex;
+            hash = 31 * hash + field.u2descriptorIndex;
+            hash = 31 * hash + hash(field.u2attributesCount, field.attributes);
+        }
+
+        for (int i = 0; i < clazz.u2methodsCount; i++) {
+            final ProgramMethod method = clazz.methods[i];
+            hash = 31 * hash + method.u2accessFlags;
+            hash = 31 * hash + method.u2nameIndex;
+            hash = 31 * hash + method.u2descriptorIndex;
+            hash = 31 * hash + hash(method.u2attributesCount, method.attributes);
+
+            for (int j = 0; j < method.u2attributesCount; j++) {
+                final Attribute attribute = method.attributes[j];
+                if (attribute instanceof CodeAttribute code) {
+                    hash = 31 * hash + code.u4codeLength;
+                    for (int k = 0; k < code.u4codeLength; k++) {
+                        hash = 31 * hash + code.code[k];
+                    }
+
+                    hash = 31 * hash + code.u2exceptionTableLength;
+                    for (int k = 0; k < code.u2exceptionTableLength; k++) {
+                        final ExceptionInfo exception = code.exceptionTable[k];
+                        hash = 31 * hash + exception.u2startPC;
+                        hash = 31 * hash + exception.u2endPC;
+                        hash = 31 * hash + exception.u2handlerPC;
+                        hash = 31 * hash + exception.u2catchType;
+                    }
+
+                    hash = 31 * hash + hash(code.u2attributesCount, code.attributes);
+                }
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Hashes the kinds of the attributes, the optimizations only change the other attributes by removing them
+     * or through the constants they refer to.
+     */
+    private static long hash(int count, Attribute[] attributes) {
+        long hash = count;
+        for (int i = 0; i < count; i++) {
+            hash = 31 * hash + attributes[i].u2attributeNameIndex;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Hashes the contents of a constant, by the indices of the constants it refers to, if any.
+     */
+    private static long hash(Constant constant) {
+        if (constant == null) {
+            // the second half of a long or double
+            return 0;
+        }
+
+        long hash = constant.getTag();
+        if (constant instanceof Utf8Constant utf8) {
+            hash = 31 * hash + utf8.getString().hashCode();
+        } else if (constant instanceof IntegerConstant integer) {
+            hash = 31 * hash + integer.getValue();
+        } else if (constant instanceof LongConstant longConstant) {
+            hash = 31 * hash + Long.hashCode(longConstant.getValue());
+        } else if (constant instanceof FloatConstant floatConstant) {
+            hash = 31 * hash + Float.floatToRawIntBits(floatConstant.getValue());
+        } else if (constant instanceof DoubleConstant doubleConstant) {
+            hash = 31 * hash + Double.hashCode(doubleConstant.getValue());
+        } else if (constant instanceof StringConstant string) {
+            hash = 31 * hash + string.u2stringIndex;
+        } else if (constant instanceof ClassConstant classConstant) {
+            hash = 31 * hash + classConstant.u2nameIndex;
+        } else if (constant instanceof RefConstant ref) {
+            hash = 31 * hash + ref.u2classIndex;
+            hash = 31 * hash + ref.u2nameAndTypeIndex;
+        } else if (constant instanceof NameAndTypeConstant nameAndType) {
+            hash = 31 * hash + nameAndType.u2nameIndex;
+            hash = 31 * hash + nameAndType.u2descriptorIndex;
+        } else if (constant instanceof MethodHandleConstant methodHandle) {
+            hash = 31 * hash + methodHandle.u1referenceKind;
+            hash = 31 * hash + methodHandle.u2referenceIndex;
+        } else if (constant instanceof MethodTypeConstant methodType) {
+            hash = 31 * hash + methodType.u2descriptorIndex;
+        } else if (constant instanceof InvokeDynamicConstant invokeDynamic) {
+            hash = 31 * hash + invokeDynamic.u2bootstrapMethodAttributeIndex;
+            hash = 31 * hash + invokeDynamic.u2nameAndTypeIndex;
+        } else if (constant instanceof DynamicConstant dynamic) {
+            hash = 31 * hash + dynamic.u2bootstrapMethodAttributeIndex;
+            hash = 31 * hash + dynamic.u2nameAndTypeIndex;
+        } else {
+            // anything else is compared by identity, e.g. primitive array constants are only ever replaced
+            hash = 31 * hash + System.identityHashCode(constant);
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,87 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.ProgramClass;
+import proguard.classfile.constant.ClassConstant;
+import proguard.classfile.constant.Constant;
+
+import java.util.*;
+
+/**
+ * Tracks which program classes were modified between optimization passes.
+ * <p>
+ * Classes are compared by their {@link ClassHash}.
+ * The stages that only look at the code of a class itself only need to revisit the modified classes,
+ * the stages that use optimization info (e.g. side effects, constant parameters and return values)
+ * also revisit the classes referencing a modified class, as the info about its members may have changed.
+ * Facts propagating further than that are picked up in later passes, as their revisits modify classes again.
+ */
+class ClassModificationTracker {
+    private final Map<Clazz, Long> hashes = new IdentityHashMap<>();
+
+    /**
+     * The classes that need revisiting in a pass.
+     *
+     * @param modified the classes modified since the last pass, for the class-local stages
+     * @param affected the modified classes and the classes directly referencing them, for the stages using optimization info
+     */
+    record Changes(Set<Clazz> modified, Set<Clazz> affected) {
+    }
+
+    /**
+     * Records the current state of the classes, returning the classes that need revisiting
+     * since the last time, or {@code null} if this is the first time.
+     */
+    Changes update(ClassPool programClassPool) {
+        final boolean first = hashes.isEmpty();
+
+        final Set<Clazz> modified = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Map<String, Clazz> classes = new HashMap<>();
+        programClassPool.classesAccept(clazz -> {
+            classes.put(clazz.getName(), clazz);
+
+            final Long hash = ClassHash.of((ProgramClass) clazz);
+            if (!hash.equals(hashes.put(clazz, hash))) {
+                modified.add(clazz);
+            }
+        });
+
+        // drop classes that are gone
+        hashes.keySet().retainAll(classes.values());
+        if (first) {
+            return null;
+        }
+
+        // the modified classes and the classes referencing any of them
+        final Set<Clazz> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        affected.addAll(modified);
+        for (final Clazz clazz : classes.values()) {
+            if (affected.contains(clazz)) {
+                continue;
+            }
+
+            for (final String name : referencedClassNames((ProgramClass) clazz)) {
+                final Clazz referenced = classes.get(name);
+                if (referenced != null && modified.contains(referenced)) {
+                    affected.add(clazz);
+                    break;
+                }
+            }
+        }
+
+        return new Changes(modified, affected);
+    }
+
+    private static Set<String> referencedClassNames(ProgramClass clazz) {
+        final Set<String> names = new HashSet<>();
+        for (int i = 1; i < clazz.u2constantPoolCount; i++) {
+            final Constant constant = clazz.constantPool[i];
+            if (constant instanceof ClassConstant classConstant) {
+                names.add(classConstant.getName(clazz));
+            }
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,29 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.util.Set;
+
+/**
+ * This {@link ClassVisitor} delegates its visits to another given {@link ClassVisitor},
+ * but only for classes in the given set. A {@code null} set accepts all classes.
+ */
+class ClassSetFilter implements ClassVisitor {
+    private final Set<Clazz> classes;
+    private final ClassVisitor classVisitor;
+
+    public ClassSetFilter(Set<Clazz> classes, ClassVisitor classVisitor) {
+        this.classes = classes;
+        this.classVisitor = classVisitor;
+    }
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz) {
+        if (classes == null || classes.contains(clazz)) {
+            clazz.accept(classVisitor);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.Method;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.instruction.ConstantInstruction;
+import proguard.classfile.instruction.Instruction;
+import proguard.classfile.instruction.visitor.InstructionVisitor;
+import proguard.classfile.visitor.ClassPoolVisitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class collects constant instructions, so they can be visited again
+ * later on. This splits marking into two phases: the instructions are found
+ * in parallel, with one collector per worker, and markers that change the
+ * optimization info of the referenced classes and class members, which
+ * other workers may be reading or changing at the same time, are applied
+ * to them afterwards, on a single thread.
+ */
+class DeferredInstructions {
+    private final List<List<Visit>> visits = Collections.synchronizedList(new ArrayList<>());
+
+
+    /**
+     * Returns a new InstructionVisitor that collects the constant
+     * instructions that it visits. A collector must only be used by a
+     * single thread.
+     */
+    public InstructionVisitor createCollector() {
+        List<Visit> collected = new ArrayList<>();
+        visits.add(collected);
+
+        return new InstructionVisitor() {
+            public void visitAnyInstruction(Clazz clazz, Method method, CodeAttribute codeAttribute, int offset, Instruction instruction) {
+            }
+
+
+            public void visitConstantInstruction(Clazz clazz, Method method, CodeAttribute codeAttribute, int offset, ConstantInstruction constantInstruction) {
+                collected.add(new Visit(clazz, method, codeAttribute, offset, constantInstruction));
+            }
+        };
+    }
+
+
+    /**
+     * Returns a ClassPoolVisitor that lets the given InstructionVisitor visit
+     * all collected instructions, regardless of the visited class pool, and
+     * then forgets them.
+     */
+    public ClassPoolVisitor instructionsAccepter(InstructionVisitor instructionVisitor) {
+        return new ClassPoolVisitor() {
+            public void visitClassPool(ClassPool classPool) {
+                synchronized (visits) {
+                    for (List<Visit> collected : visits) {
+                        for (Visit visit : collected) {
+                            visit.instruction.accept(visit.clazz, visit.method, visit.codeAttribute, visit.offset, instructionVisitor);
+                        }
+                    }
+
+                    visits.clear();
+                }
+            }
+        };
+    }
+
+
+    private record Visit(Clazz clazz, Method method, CodeAttribute codeAttribute, int offset, Instruction instruction) {
+    }
+}
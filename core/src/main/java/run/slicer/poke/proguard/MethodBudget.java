@@ -0,0 +1,73 @@
+package run.slicer.poke.proguard;
+
+/**
+ * Per-method limits for the partial evaluation done by the {@link Optimizer}.
+ * <p>
+ * Methods over budget are marked as not optimizable before the first pass and are left unchanged,
+ * so a few giant methods can't stall the optimization of everything else.
+ * Budgets are immutable and can be shared by any number of {@link Optimizer}s.
+ */
+public final class MethodBudget {
+    /**
+     * A budget without any limits.
+     */
+    public static final MethodBudget UNLIMITED = new MethodBudget(0, 0, 0);
+
+    private final int maxInstructions;
+    private final int maxEvaluations;
+    private final long maxTime;
+
+    /**
+     * @param maxInstructions the maximum amount of instructions of a method, 0 for no limit
+     * @param maxEvaluations  the maximum amount of instruction evaluations in a trial evaluation of a method, 0 for no limit
+     * @param maxTime         the maximum wall time of a trial evaluation of a method in nanoseconds, 0 for no limit
+     */
+    public MethodBudget(int maxInstructions, int maxEvaluations, long maxTime) {
+        if (maxInstructions < 0) {
+            throw new IllegalArgumentException("maxInstructions < 0");
+        }
+        if (maxEvaluations < 0) {
+            throw new IllegalArgumentException("maxEvaluations < 0");
+        }
+        if (maxTime < 0) {
+            throw new IllegalArgumentException("maxTime < 0");
+        }
+
+        this.maxInstructions = maxInstructions;
+        this.maxEvaluations = maxEvaluations;
+        this.maxTime = maxTime;
+    }
+
+    public int maxInstructions() {
+        return maxInstructions;
+    }
+
+    public int maxEvaluations() {
+        return maxEvaluations;
+    }
+
+    public long maxTime() {
+        return maxTime;
+    }
+
+    /**
+     * Returns whether any limit is set.
+     */
+    public boolean isLimited() {
+        return maxInstructions > 0 || maxEvaluations > 0 || maxTime > 0;
+    }
+
+    /**
+     * Returns whether methods need a trial evaluation to be checked against this budget.
+     */
+    boolean needsEvaluation() {
+        return maxEvaluations > 0 || maxTime > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodBudget[maxInstructions=" + maxInstructions
+                + ", maxEvaluations=" + maxEvaluations
+                + ", maxTime=" + maxTime + "]";
+    }
+}
@@ -0,0 +1,53 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.Method;
+import proguard.classfile.attribute.Attribute;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.attribute.visitor.AttributeVisitor;
+
+import java.util.Set;
+
+/**
+ * This AttributeVisitor delegates its visits to code attributes to one of
+ * two given AttributeVisitors, depending on whether they are over their
+ * {@link MethodBudget}, as marked by a {@link MethodBudgetMarker}.
+ * Other attributes are ignored.
+ */
+class MethodBudgetFilter
+        implements AttributeVisitor {
+    private final Set<CodeAttribute> overBudget;
+    private final AttributeVisitor attributeVisitor;
+    private final AttributeVisitor otherAttributeVisitor;
+
+    /**
+     * @param attributeVisitor the visitor for code attributes within budget
+     */
+    public MethodBudgetFilter(Set<CodeAttribute> overBudget, AttributeVisitor attributeVisitor) {
+        this(overBudget, attributeVisitor, null);
+    }
+
+    /**
+     * @param attributeVisitor      the visitor for code attributes within budget, may be null
+     * @param otherAttributeVisitor the visitor for code attributes over budget, may be null
+     */
+    public MethodBudgetFilter(Set<CodeAttribute> overBudget, AttributeVisitor attributeVisitor, AttributeVisitor otherAttributeVisitor) {
+        this.overBudget = overBudget;
+        this.attributeVisitor = attributeVisitor;
+        this.otherAttributeVisitor = otherAttributeVisitor;
+    }
+
+
+    // Implementations for AttributeVisitor.
+
+    public void visitAnyAttribute(Clazz clazz, Attribute attribute) {
+    }
+
+
+    public void visitCodeAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute) {
+        AttributeVisitor delegate = overBudget.contains(codeAttribute) ? otherAttributeVisitor : attributeVisitor;
+        if (delegate != null) {
+            codeAttribute.accept(clazz, method, delegate);
+        }
+    }
+}
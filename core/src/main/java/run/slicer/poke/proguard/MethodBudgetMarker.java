@@ -0,0 +1,178 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.Method;
+import proguard.classfile.attribute.Attribute;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.attribute.visitor.AttributeVisitor;
+import proguard.classfile.instruction.Instruction;
+import proguard.classfile.instruction.visitor.InstructionVisitor;
+import proguard.evaluation.BasicInvocationUnit;
+import proguard.evaluation.PartialEvaluator;
+import proguard.evaluation.exception.ExcessiveComplexityException;
+import proguard.evaluation.value.ParticularValueFactory;
+import proguard.evaluation.value.ValueFactory;
+import proguard.util.ProcessingFlags;
+
+import java.util.Set;
+
+/**
+ * This AttributeVisitor marks code attributes that exceed a {@link MethodBudget}
+ * as not optimizable, by setting their DONT_OPTIMIZE processing flag, and
+ * collects them in the given set.
+ * <p>
+ * The instruction count is checked first. Methods with at least
+ * {@link #TRIAL_CODE_LENGTH} bytes of code are then evaluated once, with
+ * the same kind of partial evaluation as the most expensive optimization
+ * stages, and checked against the evaluation and time limits; smaller
+ * methods can't get anywhere near any sensible limit.
+ * <p>
+ * The partial evaluator can only be stopped after a number of evaluations,
+ * so the time limit is enforced with evaluation limits as well. A first
+ * trial with {@link #TRIAL_EVALUATIONS} evaluations measures how fast the
+ * method evaluates, and if it doesn't complete, it's evaluated again with
+ * as many evaluations as should fit into the remaining time.
+ */
+class MethodBudgetMarker
+        implements AttributeVisitor,
+        InstructionVisitor {
+    static final int TRIAL_CODE_LENGTH = 1000;
+    static final int TRIAL_EVALUATIONS = 10_000;
+
+    private final MethodBudget budget;
+    private final Set<CodeAttribute> overBudget;
+    private final StageListener stageListener;
+
+    private PartialEvaluator partialEvaluator;
+    private int partialEvaluatorEvaluations;
+    private int instructionCount;
+
+    /**
+     * @param overBudget    the set to collect the over-budget code attributes in,
+     *                      it must be safe for concurrent use if the marker
+     *                      is used from multiple threads
+     * @param stageListener the listener that gets notified of skipped methods
+     */
+    public MethodBudgetMarker(MethodBudget budget, Set<CodeAttribute> overBudget, StageListener stageListener) {
+        this.budget = budget;
+        this.overBudget = overBudget;
+        this.stageListener = stageListener;
+    }
+
+
+    // Implementations for AttributeVisitor.
+
+    public void visitAnyAttribute(Clazz clazz, Attribute attribute) {
+    }
+
+
+    public void visitCodeAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute) {
+        String reason = check(clazz, method, codeAttribute);
+        if (reason != null) {
+            codeAttribute.processingFlags |= ProcessingFlags.DONT_OPTIMIZE;
+            overBudget.add(codeAttribute);
+
+            stageListener.methodSkipped(clazz.getName(),
+                    method.getName(clazz) + method.getDescriptor(clazz),
+                    reason);
+        }
+    }
+
+
+    // Implementations for InstructionVisitor.
+
+    public void visitAnyInstruction(Clazz clazz, Method method, CodeAttribute codeAttribute, int offset, Instruction instruction) {
+        instructionCount++;
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns why the given code is over budget, or null if it isn't.
+     */
+    private String check(Clazz clazz, Method method, CodeAttribute codeAttribute) {
+        // Every instruction takes up at least one byte.
+        int maxInstructions = budget.maxInstructions();
+        if (maxInstructions > 0 && codeAttribute.u4codeLength > maxInstructions) {
+            instructionCount = 0;
+            codeAttribute.instructionsAccept(clazz, method, this);
+
+            if (instructionCount > maxInstructions) {
+                return instructionCount + " instructions, limit is " + maxInstructions;
+            }
+        }
+
+        if (!budget.needsEvaluation() || codeAttribute.u4codeLength < TRIAL_CODE_LENGTH) {
+            return null;
+        }
+
+        int maxEvaluations = budget.maxEvaluations() > 0 ? budget.maxEvaluations() : Integer.MAX_VALUE;
+        long maxTime = budget.maxTime();
+
+        long start = System.nanoTime();
+        int evaluations = maxTime > 0 ? Math.min(TRIAL_EVALUATIONS, maxEvaluations) : maxEvaluations;
+        while (true) {
+            long trialStart = System.nanoTime();
+            try {
+                partialEvaluator(evaluations).visitCodeAttribute(clazz, method, codeAttribute);
+                break;
+            } catch (ExcessiveComplexityException e) {
+                if (evaluations == maxEvaluations) {
+                    return "over " + maxEvaluations + " evaluations";
+                }
+            } catch (RuntimeException e) {
+                // The optimization stages would fail too.
+                return "evaluation failed: " + e.getMessage();
+            }
+
+            // Only the time limit can have stopped the evaluation. Evaluate
+            // again, with as many evaluations as fit into the remaining time
+            // at the rate of this trial, if that's any more.
+            long now = System.nanoTime();
+            long remaining = start + maxTime - now;
+            long fitting = remaining <= 0 ? 0 : (long) ((double) evaluations * remaining / Math.max(1L, now - trialStart));
+            if (fitting <= evaluations) {
+                return "not evaluated within " + maxTime / 1_000_000L + " ms";
+            }
+
+            evaluations = (int) Math.min(fitting, maxEvaluations);
+        }
+
+        long time = System.nanoTime() - start;
+        if (maxTime > 0 && time > maxTime) {
+            return "evaluated in " + time / 1_000_000L + " ms, limit is " + maxTime / 1_000_000L + " ms";
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Returns a partial evaluator that stops after the given amount of
+     * evaluations, reusing the one for the first trial.
+     */
+    private PartialEvaluator partialEvaluator(int maxEvaluations) {
+        if (partialEvaluator != null && partialEvaluatorEvaluations == maxEvaluations) {
+            return partialEvaluator;
+        }
+
+        ValueFactory valueFactory = new ParticularValueFactory();
+
+        PartialEvaluator.Builder builder = PartialEvaluator.Builder.create()
+                .setValueFactory(valueFactory)
+                .setInvocationUnit(new BasicInvocationUnit(valueFactory))
+                .setEvaluateAllCode(false);
+        if (maxEvaluations < Integer.MAX_VALUE) {
+            builder.stopAnalysisAfterNEvaluations(maxEvaluations);
+        }
+
+        PartialEvaluator evaluator = builder.build();
+        if (partialEvaluator == null) {
+            partialEvaluator = evaluator;
+            partialEvaluatorEvaluations = maxEvaluations;
+        }
+
+        return evaluator;
+    }
+}
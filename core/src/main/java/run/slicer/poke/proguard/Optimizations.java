@@ -0,0 +1,111 @@
+package run.slicer.poke.proguard;
+
+import proguard.util.ConstantMatcher;
+import proguard.util.ListParser;
+import proguard.util.NameParser;
+import proguard.util.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable set of enabled optimizations, evaluated once from an optimization filter.
+ * <p>
+ * The matchers parsed from a filter keep state while matching, so they can't be shared between threads,
+ * unlike the evaluated set, which can be shared by any number of {@link Optimizer}s.
+ */
+public final class Optimizations {
+    private static final List<String> NAMES = List.of(
+            Optimizer.FIELD_GENERALIZATION_CLASS,
+            Optimizer.FIELD_SPECIALIZATION_TYPE,
+            Optimizer.FIELD_PROPAGATION_VALUE,
+            Optimizer.METHOD_GENERALIZATION_CLASS,
+            Optimizer.METHOD_SPECIALIZATION_PARAMETER_TYPE,
+            Optimizer.METHOD_SPECIALIZATION_RETURN_TYPE,
+            Optimizer.METHOD_PROPAGATION_PARAMETER,
+            Optimizer.METHOD_PROPAGATION_RETURNVALUE,
+            Optimizer.METHOD_INLINING_SHORT,
+            Optimizer.METHOD_INLINING_UNIQUE,
+            Optimizer.METHOD_INLINING_TAILRECURSION,
+            Optimizer.CODE_MERGING,
+            Optimizer.CODE_SIMPLIFICATION_VARIABLE,
+            Optimizer.CODE_SIMPLIFICATION_ARITHMETIC,
+            Optimizer.CODE_SIMPLIFICATION_CAST,
+            Optimizer.CODE_SIMPLIFICATION_FIELD,
+            Optimizer.CODE_SIMPLIFICATION_BRANCH,
+            Optimizer.CODE_SIMPLIFICATION_OBJECT,
+            Optimizer.CODE_SIMPLIFICATION_STRING,
+            Optimizer.CODE_SIMPLIFICATION_MATH,
+            Optimizer.CODE_SIMPLIFICATION_ADVANCED,
+            Optimizer.CODE_REMOVAL_ADVANCED,
+            Optimizer.CODE_REMOVAL_SIMPLE,
+            Optimizer.CODE_REMOVAL_VARIABLE,
+            Optimizer.CODE_REMOVAL_EXCEPTION,
+            Optimizer.CODE_ALLOCATION_VARIABLE
+    );
+
+    private final Set<String> enabled;
+
+    private Optimizations(Set<String> enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the optimization filter of the analyzer, optionally with method inlining.
+     */
+    public static List<String> filter(boolean inline) {
+        List<String> filter = new ArrayList<>(List.of(
+                "field/*",
+                "method/generalization/*",
+                "method/specialization/*",
+                "method/propagation/*",
+                "code/*"
+        ));
+
+        if (inline) {
+            filter.add("method/inlining/*");
+        }
+
+        return filter;
+    }
+
+    /**
+     * Evaluates the given optimization filter, a {@code null} filter enables all optimizations.
+     * <p>
+     * Optimizations required by other enabled optimizations are enabled as well.
+     */
+    public static Optimizations parse(List<String> filter) {
+        StringMatcher matcher = filter != null ?
+                new ListParser(new NameParser()).parse(filter) :
+                new ConstantMatcher(true);
+
+        Set<String> enabled = new HashSet<>();
+        for (String name : NAMES) {
+            if (matcher.matches(name)) {
+                enabled.add(name);
+            }
+        }
+
+        // Some optimizations are required by other optimizations.
+        if (enabled.contains(Optimizer.FIELD_PROPAGATION_VALUE) ||
+                enabled.contains(Optimizer.METHOD_PROPAGATION_PARAMETER) ||
+                enabled.contains(Optimizer.METHOD_PROPAGATION_RETURNVALUE)) {
+            enabled.add(Optimizer.CODE_SIMPLIFICATION_ADVANCED);
+        }
+        if (enabled.contains(Optimizer.CODE_SIMPLIFICATION_BRANCH)) {
+            enabled.add(Optimizer.CODE_REMOVAL_SIMPLE);
+        }
+        if (enabled.contains(Optimizer.CODE_REMOVAL_ADVANCED) ||
+                enabled.contains(Optimizer.CODE_REMOVAL_SIMPLE)) {
+            enabled.add(Optimizer.CODE_REMOVAL_EXCEPTION);
+        }
+
+        return new Optimizations(Set.copyOf(enabled));
+    }
+
+    public boolean contains(String name) {
+        return enabled.contains(name);
+    }
+}
@@ -25,8 +25,10 @@ import proguard.ClassSpecificationVisitorFactory;
 import proguard.Configuration;
 import proguard.classfile.AccessConstants;
 import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
 import proguard.classfile.VersionConstants;
 import proguard.classfile.attribute.Attribute;
+import proguard.classfile.attribute.CodeAttribute;
 import proguard.classfile.attribute.visitor.*;
 import proguard.classfile.constant.Constant;
 import proguard.classfile.constant.visitor.*;
@@ -50,75 +52,82 @@ import proguard.pass.Pass;
 import proguard.util.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This pass optimizes class pools according to a given configuration.
  * <p>
  * This pass is stateful. It tracks when no more optimizations are
- * possible, and then all further runs of this pass will have no effect.
+ * possible, and then all further runs of this pass will have no effect,
+ * so each class pool needs its own optimizer. The given
+ * {@link Optimizations} and {@link Workers} can be shared between optimizers.
+ * <p>
+ * The {@link Cancellation} of the given workers is checked between stages;
+ * a cancelled pass leaves the class pools in an inconsistent state.
  *
  * @author Eric Lafortune
  */
 public class Optimizer implements Pass {
     private static final Logger logger = Logger.getLogger(Optimizer.class);
 
-    private static final String FIELD_GENERALIZATION_CLASS = "field/generalization/class";
-    private static final String FIELD_SPECIALIZATION_TYPE = "field/specialization/type";
-    private static final String FIELD_PROPAGATION_VALUE = "field/propagation/value";
-    private static final String METHOD_GENERALIZATION_CLASS = "method/generalization/class";
-    private static final String METHOD_SPECIALIZATION_PARAMETER_TYPE = "method/specialization/parametertype";
-    private static final String METHOD_SPECIALIZATION_RETURN_TYPE = "method/specialization/returntype";
-    private static final String METHOD_PROPAGATION_PARAMETER = "method/propagation/parameter";
-    private static final String METHOD_PROPAGATION_RETURNVALUE = "method/propagation/returnvalue";
-    private static final String METHOD_INLINING_SHORT = "method/inlining/short";
-    private static final String METHOD_INLINING_UNIQUE = "method/inlining/unique";
-    private static final String METHOD_INLINING_TAILRECURSION = "method/inlining/tailrecursion";
-    private static final String CODE_MERGING = "code/merging";
-    private static final String CODE_SIMPLIFICATION_VARIABLE = "code/simplification/variable";
-    private static final String CODE_SIMPLIFICATION_ARITHMETIC = "code/simplification/arithmetic";
-    private static final String CODE_SIMPLIFICATION_CAST = "code/simplification/cast";
-    private static final String CODE_SIMPLIFICATION_FIELD = "code/simplification/field";
-    private static final String CODE_SIMPLIFICATION_BRANCH = "code/simplification/branch";
-    private static final String CODE_SIMPLIFICATION_OBJECT = "code/simplification/object";
-    private static final String CODE_SIMPLIFICATION_STRING = "code/simplification/string";
-    private static final String CODE_SIMPLIFICATION_MATH = "code/simplification/math";
-    private static final String CODE_SIMPLIFICATION_ADVANCED = "code/simplification/advanced";
-    private static final String CODE_REMOVAL_ADVANCED = "code/removal/advanced";
-    private static final String CODE_REMOVAL_SIMPLE = "code/removal/simple";
-    private static final String CODE_REMOVAL_VARIABLE = "code/removal/variable";
-    private static final String CODE_REMOVAL_EXCEPTION = "code/removal/exception";
-    private static final String CODE_ALLOCATION_VARIABLE = "code/allocation/variable";
-
-
-    private boolean fieldGeneralizationClass;
-    private boolean fieldSpecializationType;
-    private boolean fieldPropagationValue;
-    private boolean methodGeneralizationClass;
-    private boolean methodSpecializationParametertype;
-    private boolean methodSpecializationReturntype;
-    private boolean methodPropagationParameter;
-    private boolean methodPropagationReturnvalue;
-    private boolean methodInliningShort;
-    private boolean methodInliningUnique;
-    private boolean methodInliningTailrecursion;
-    private boolean codeMerging;
-    private boolean codeSimplificationVariable;
-    private boolean codeSimplificationArithmetic;
-    private boolean codeSimplificationCast;
-    private boolean codeSimplificationField;
-    private boolean codeSimplificationBranch;
-    private boolean codeSimplificationObject;
-    private boolean codeSimplificationString;
-    private boolean codeSimplificationMath;
-    private boolean codeSimplificationPeephole;
-    private boolean codeSimplificationAdvanced;
-    private boolean codeRemovalAdvanced;
-    private boolean codeRemovalSimple;
-    private boolean codeRemovalVariable;
-    private boolean codeRemovalException;
-    private boolean codeAllocationVariable;
+    static final String FIELD_GENERALIZATION_CLASS = "field/generalization/class";
+    static final String FIELD_SPECIALIZATION_TYPE = "field/specialization/type";
+    static final String FIELD_PROPAGATION_VALUE = "field/propagation/value";
+    static final String METHOD_GENERALIZATION_CLASS = "method/generalization/class";
+    static final String METHOD_SPECIALIZATION_PARAMETER_TYPE = "method/specialization/parametertype";
+    static final String METHOD_SPECIALIZATION_RETURN_TYPE = "method/specialization/returntype";
+    static final String METHOD_PROPAGATION_PARAMETER = "method/propagation/parameter";
+    static final String METHOD_PROPAGATION_RETURNVALUE = "method/propagation/returnvalue";
+    static final String METHOD_INLINING_SHORT = "method/inlining/short";
+    static final String METHOD_INLINING_UNIQUE = "method/inlining/unique";
+    static final String METHOD_INLINING_TAILRECURSION = "method/inlining/tailrecursion";
+    static final String CODE_MERGING = "code/merging";
+    static final String CODE_SIMPLIFICATION_VARIABLE = "code/simplification/variable";
+    static final String CODE_SIMPLIFICATION_ARITHMETIC = "code/simplification/arithmetic";
+    static final String CODE_SIMPLIFICATION_CAST = "code/simplification/cast";
+    static final String CODE_SIMPLIFICATION_FIELD = "code/simplification/field";
+    static final String CODE_SIMPLIFICATION_BRANCH = "code/simplification/branch";
+    static final String CODE_SIMPLIFICATION_OBJECT = "code/simplification/object";
+    static final String CODE_SIMPLIFICATION_STRING = "code/simplification/string";
+    static final String CODE_SIMPLIFICATION_MATH = "code/simplification/math";
+    static final String CODE_SIMPLIFICATION_ADVANCED = "code/simplification/advanced";
+    static final String CODE_REMOVAL_ADVANCED = "code/removal/advanced";
+    static final String CODE_REMOVAL_SIMPLE = "code/removal/simple";
+    static final String CODE_REMOVAL_VARIABLE = "code/removal/variable";
+    static final String CODE_REMOVAL_EXCEPTION = "code/removal/exception";
+    static final String CODE_ALLOCATION_VARIABLE = "code/allocation/variable";
+
+
+    private final boolean fieldGeneralizationClass;
+    private final boolean fieldSpecializationType;
+    private final boolean fieldPropagationValue;
+    private final boolean methodGeneralizationClass;
+    private final boolean methodSpecializationParametertype;
+    private final boolean methodSpecializationReturntype;
+    private final boolean methodPropagationParameter;
+    private final boolean methodPropagationReturnvalue;
+    private final boolean methodInliningShort;
+    private final boolean methodInliningUnique;
+    private final boolean methodInliningTailrecursion;
+    private final boolean codeMerging;
+    private final boolean codeSimplificationVariable;
+    private final boolean codeSimplificationArithmetic;
+    private final boolean codeSimplificationCast;
+    private final boolean codeSimplificationField;
+    private final boolean codeSimplificationBranch;
+    private final boolean codeSimplificationObject;
+    private final boolean codeSimplificationString;
+    private final boolean codeSimplificationMath;
+    private final boolean codeSimplificationPeephole;
+    private final boolean codeSimplificationAdvanced;
+    private final boolean codeRemovalAdvanced;
+    private final boolean codeRemovalSimple;
+    private final boolean codeRemovalVariable;
+    private final boolean codeRemovalException;
+    private final boolean codeAllocationVariable;
 
 
     // The optimizer uses this field to communicate to its following
@@ -126,66 +135,76 @@ public class Optimizer implements Pass {
     private boolean moreOptimizationsPossible = true;
     private int passIndex = 0;
 
+    // The optimizer uses this tracker to only revisit modified classes
+    // and their dependents in the class-local stages of later passes.
+    private final ClassModificationTracker modificationTracker = new ClassModificationTracker();
+
     private final Configuration configuration;
+    private final StageListener stageListener;
+    private final Workers workers;
+    private final MethodBudget methodBudget;
+
+    // The code attributes that were found to be over budget in the first
+    // pass, they're left alone by all evaluating stages.
+    private final Set<CodeAttribute> overBudget = ConcurrentHashMap.newKeySet();
 
     public Optimizer(Configuration configuration) {
-        this.configuration = configuration;
+        this(configuration, StageListener.NONE);
     }
 
+    public Optimizer(Configuration configuration, StageListener stageListener) {
+        this(configuration, stageListener, Workers.INLINE);
+    }
 
-    @Override
-    public void execute(AppView appView) throws IOException {
-        if (!moreOptimizationsPossible) {
-            return;
-        }
+    public Optimizer(Configuration configuration, StageListener stageListener, Workers workers) {
+        this(configuration, Optimizations.parse(configuration.optimizations), stageListener, workers);
+    }
 
-        // Create a matcher for filtering optimizations.
-        StringMatcher filter = configuration.optimizations != null ?
-                new ListParser(new NameParser()).parse(configuration.optimizations) :
-                new ConstantMatcher(true);
-
-        fieldGeneralizationClass = filter.matches(FIELD_GENERALIZATION_CLASS);
-        fieldSpecializationType = filter.matches(FIELD_SPECIALIZATION_TYPE);
-        fieldPropagationValue = filter.matches(FIELD_PROPAGATION_VALUE);
-        methodGeneralizationClass = filter.matches(METHOD_GENERALIZATION_CLASS);
-        methodSpecializationParametertype = filter.matches(METHOD_SPECIALIZATION_PARAMETER_TYPE);
-        methodSpecializationReturntype = filter.matches(METHOD_SPECIALIZATION_RETURN_TYPE);
-        methodPropagationParameter = filter.matches(METHOD_PROPAGATION_PARAMETER);
-        methodPropagationReturnvalue = filter.matches(METHOD_PROPAGATION_RETURNVALUE);
-        methodInliningShort = filter.matches(METHOD_INLINING_SHORT);
-        methodInliningUnique = filter.matches(METHOD_INLINING_UNIQUE);
-        methodInliningTailrecursion = filter.matches(METHOD_INLINING_TAILRECURSION);
-        codeMerging = filter.matches(CODE_MERGING);
-        codeSimplificationVariable = filter.matches(CODE_SIMPLIFICATION_VARIABLE);
-        codeSimplificationArithmetic = filter.matches(CODE_SIMPLIFICATION_ARITHMETIC);
-        codeSimplificationCast = filter.matches(CODE_SIMPLIFICATION_CAST);
-        codeSimplificationField = filter.matches(CODE_SIMPLIFICATION_FIELD);
-        codeSimplificationBranch = filter.matches(CODE_SIMPLIFICATION_BRANCH);
-        codeSimplificationObject = filter.matches(CODE_SIMPLIFICATION_OBJECT);
-        codeSimplificationString = filter.matches(CODE_SIMPLIFICATION_STRING);
-        codeSimplificationMath = filter.matches(CODE_SIMPLIFICATION_MATH);
-        codeSimplificationAdvanced = filter.matches(CODE_SIMPLIFICATION_ADVANCED);
-        codeRemovalAdvanced = filter.matches(CODE_REMOVAL_ADVANCED);
-        codeRemovalSimple = filter.matches(CODE_REMOVAL_SIMPLE);
-        codeRemovalVariable = filter.matches(CODE_REMOVAL_VARIABLE);
-        codeRemovalException = filter.matches(CODE_REMOVAL_EXCEPTION);
-        codeAllocationVariable = filter.matches(CODE_ALLOCATION_VARIABLE);
-
-        // Some optimizations are required by other optimizations.
-        codeSimplificationAdvanced =
-                codeSimplificationAdvanced ||
-                        fieldPropagationValue ||
-                        methodPropagationParameter ||
-                        methodPropagationReturnvalue;
-
-        codeRemovalSimple =
-                codeRemovalSimple ||
-                        codeSimplificationBranch;
-
-        codeRemovalException =
-                codeRemovalException ||
-                        codeRemovalAdvanced ||
-                        codeRemovalSimple;
+    /**
+     * @param optimizations the enabled optimizations, overriding the filter of the configuration
+     * @param workers       the workers for the parallel stages
+     */
+    public Optimizer(Configuration configuration, Optimizations optimizations, StageListener stageListener, Workers workers) {
+        this(configuration, optimizations, MethodBudget.UNLIMITED, stageListener, workers);
+    }
+
+    /**
+     * @param optimizations the enabled optimizations, overriding the filter of the configuration
+     * @param methodBudget  the limits for the methods to be optimized
+     * @param workers       the workers for the parallel stages
+     */
+    public Optimizer(Configuration configuration, Optimizations optimizations, MethodBudget methodBudget, StageListener stageListener, Workers workers) {
+        this.configuration = configuration;
+        this.stageListener = stageListener;
+        this.workers = workers;
+        this.methodBudget = methodBudget;
+
+        fieldGeneralizationClass = optimizations.contains(FIELD_GENERALIZATION_CLASS);
+        fieldSpecializationType = optimizations.contains(FIELD_SPECIALIZATION_TYPE);
+        fieldPropagationValue = optimizations.contains(FIELD_PROPAGATION_VALUE);
+        methodGeneralizationClass = optimizations.contains(METHOD_GENERALIZATION_CLASS);
+        methodSpecializationParametertype = optimizations.contains(METHOD_SPECIALIZATION_PARAMETER_TYPE);
+        methodSpecializationReturntype = optimizations.contains(METHOD_SPECIALIZATION_RETURN_TYPE);
+        methodPropagationParameter = optimizations.contains(METHOD_PROPAGATION_PARAMETER);
+        methodPropagationReturnvalue = optimizations.contains(METHOD_PROPAGATION_RETURNVALUE);
+        methodInliningShort = optimizations.contains(METHOD_INLINING_SHORT);
+        methodInliningUnique = optimizations.contains(METHOD_INLINING_UNIQUE);
+        methodInliningTailrecursion = optimizations.contains(METHOD_INLINING_TAILRECURSION);
+        codeMerging = optimizations.contains(CODE_MERGING);
+        codeSimplificationVariable = optimizations.contains(CODE_SIMPLIFICATION_VARIABLE);
+        codeSimplificationArithmetic = optimizations.contains(CODE_SIMPLIFICATION_ARITHMETIC);
+        codeSimplificationCast = optimizations.contains(CODE_SIMPLIFICATION_CAST);
+        codeSimplificationField = optimizations.contains(CODE_SIMPLIFICATION_FIELD);
+        codeSimplificationBranch = optimizations.contains(CODE_SIMPLIFICATION_BRANCH);
+        codeSimplificationObject = optimizations.contains(CODE_SIMPLIFICATION_OBJECT);
+        codeSimplificationString = optimizations.contains(CODE_SIMPLIFICATION_STRING);
+        codeSimplificationMath = optimizations.contains(CODE_SIMPLIFICATION_MATH);
+        codeSimplificationAdvanced = optimizations.contains(CODE_SIMPLIFICATION_ADVANCED);
+        codeRemovalAdvanced = optimizations.contains(CODE_REMOVAL_ADVANCED);
+        codeRemovalSimple = optimizations.contains(CODE_REMOVAL_SIMPLE);
+        codeRemovalVariable = optimizations.contains(CODE_REMOVAL_VARIABLE);
+        codeRemovalException = optimizations.contains(CODE_REMOVAL_EXCEPTION);
+        codeAllocationVariable = optimizations.contains(CODE_ALLOCATION_VARIABLE);
 
         codeSimplificationPeephole =
                 codeSimplificationVariable ||
@@ -198,6 +217,15 @@ public class Optimizer implements Pass {
                         codeSimplificationMath ||
                         fieldGeneralizationClass ||
                         methodGeneralizationClass;
+    }
+
+
+    @Override
+    public void execute(AppView appView) throws IOException {
+        if (!moreOptimizationsPossible) {
+            return;
+        }
+        workers.cancellation().check();
 
         logger.info("Optimizing (pass {}/{})...", passIndex + 1, configuration.optimizationPasses);
 
@@ -245,6 +273,17 @@ public class Optimizer implements Pass {
         final ExceptionCounter codeRemovalExceptionCounter = new ExceptionCounter();
         final MemberCounter codeAllocationVariableCounter = new MemberCounter();
 
+        // Determine the classes that need to be revisited, all of them in the
+        // first pass. The class-local stages only revisit the modified classes,
+        // the stages using optimization info also revisit their referrers.
+        final ClassModificationTracker.Changes changes = modificationTracker.update(programClassPool);
+        final Set<Clazz> modifiedClasses = changes == null ? null : changes.modified();
+        final Set<Clazz> affectedClasses = changes == null ? null : changes.affected();
+        if (changes != null) {
+            logger.info("  Revisiting {} modified and {} affected of {} classes",
+                    modifiedClasses.size(), affectedClasses.size(), programClassPool.size());
+        }
+
         // Clean up any old processing info.
         programClassPool.classesAccept(new ClassCleaner());
         libraryClassPool.classesAccept(new ClassCleaner());
@@ -255,6 +294,28 @@ public class Optimizer implements Pass {
         libraryClassPool.classesAccept(new BottomClassFilter(
                 new MethodLinker()));
 
+        // Mark the methods that are over budget as not optimizable, once,
+        // before any of them get evaluated.
+        if (passIndex == 0 && methodBudget.isLimited()) {
+            ParallelAllMethodVisitor.MemberVisitorFactory checkingBudgetsMemberVisitor =
+                    new ParallelAllMethodVisitor.MemberVisitorFactory() {
+                        public MemberVisitor createMemberVisitor() {
+                            return
+                                    new AllAttributeVisitor(
+                                            new MethodBudgetMarker(methodBudget, overBudget, stageListener));
+                        }
+                    };
+
+            programClassPool.accept(
+                    timed("Checking method budgets",
+                            new ParallelAllMethodVisitor(workers,
+                                    checkingBudgetsMemberVisitor)));
+
+            if (!overBudget.isEmpty()) {
+                logger.info("  Skipping {} methods over budget", overBudget.size());
+            }
+        }
+
         // Create a visitor for marking the seeds.
         final KeepMarker keepMarker = new KeepMarker();
 
@@ -287,6 +348,22 @@ public class Optimizer implements Pass {
                                         new AttributeProcessingFlagFilter(ProcessingFlags.DONT_OPTIMIZE, 0,
                                                 new CodeAttributeToMethodVisitor(keepMarker))))));
 
+        // We also keep all class members that are referenced from code that
+        // is over budget. That code isn't evaluated, so the values it passes
+        // to fields and methods are unknown.
+        if (!overBudget.isEmpty()) {
+            programClassPool.classesAccept(
+                    new AllMethodVisitor(
+                            new AllAttributeVisitor(
+                                    new MethodBudgetFilter(overBudget, null,
+                                            new AllInstructionVisitor(
+                                                    new InstructionConstantVisitor(
+                                                            new ConstantTagFilter(new int[]{Constant.FIELDREF,
+                                                                    Constant.METHODREF,
+                                                                    Constant.INTERFACE_METHODREF},
+                                                                    new ReferencedMemberVisitor(keepMarker))))))));
+        }
+
         // We also keep all classes that are involved in .class constructs.
         // We're not looking at enum classes though, so they can be simplified.
         programClassPool.classesAccept(
@@ -451,6 +528,9 @@ public class Optimizer implements Pass {
                                         new ParameterEscapeMarker()
                                 ))));
 
+        // This is the one stage that doesn't run on the workers: ProGuard's
+        // fixpoint creates a pool of its own for every run, sized by the
+        // global parallel.threads property, or the number of processors.
         programClassPool.accept(new InfluenceFixpointVisitor(
                 new SideEffectVisitorMarkerFactory(configuration.optimizeConservatively)));
 
@@ -466,15 +546,15 @@ public class Optimizer implements Pass {
                 };
 
         programClassPool.accept(
-                new TimedClassPoolVisitor("Marking used parameters",
-                        new ParallelAllClassVisitor(
+                timed("Marking used parameters",
+                        new ParallelAllClassVisitor(workers,
                                 markingUsedParametersClassVisitor)));
 
         // Mark all parameters of referenced methods in methods whose code must
         // be kept. This prevents shrinking of method descriptors which may not
         // be propagated correctly otherwise.
         programClassPool.accept(
-                new TimedClassPoolVisitor("Marking used parameters in kept code attributes",
+                timed("Marking used parameters in kept code attributes",
                         new AllClassVisitor(
                                 new AllMethodVisitor(
                                         new OptimizationInfoMemberFilter(
@@ -533,15 +613,16 @@ public class Optimizer implements Pass {
                     new ClassAccessFilter(AccessConstants.SYNTHETIC, 0,
                             new AllMethodVisitor(
                                     new AllAttributeVisitor(
-                                            new DebugAttributeVisitor("Filling out fields, method parameters, and return values in synthetic classes",
-                                                    new PartialEvaluator(detailedValueFactory, storingInvocationUnit, false))))));
+                                            new MethodBudgetFilter(overBudget,
+                                                    new DebugAttributeVisitor("Filling out fields, method parameters, and return values in synthetic classes",
+                                                            new PartialEvaluator(detailedValueFactory, storingInvocationUnit, false)))))));
 
             // Evaluate non-synthetic classes. We may need to evaluate all
             // casts, to account for downcasts when specializing descriptors.
 
-            ParallelAllClassVisitor.ClassVisitorFactory fillingOutValuesClassVisitor =
-                    new ParallelAllClassVisitor.ClassVisitorFactory() {
-                        public ClassVisitor createClassVisitor() {
+            ParallelAllMethodVisitor.MemberVisitorFactory fillingOutValuesMemberVisitor =
+                    new ParallelAllMethodVisitor.MemberVisitorFactory() {
+                        public MemberVisitor createMemberVisitor() {
                             ValueFactory valueFactory = new ParticularValueFactory();
 
                             InvocationUnit storingInvocationUnit =
@@ -551,21 +632,20 @@ public class Optimizer implements Pass {
                                             methodSpecializationReturntype || methodPropagationReturnvalue);
 
                             return
-                                    new ClassAccessFilter(0, AccessConstants.SYNTHETIC,
-                                            new AllMethodVisitor(
-                                                    new AllAttributeVisitor(
-                                                            new DebugAttributeVisitor("Filling out fields, method parameters, and return values",
-                                                                    new PartialEvaluator(valueFactory, storingInvocationUnit,
-                                                                            fieldSpecializationType ||
-                                                                                    methodSpecializationParametertype ||
-                                                                                    methodSpecializationReturntype)))));
+                                    new AllAttributeVisitor(
+                                            new MethodBudgetFilter(overBudget,
+                                                    new DebugAttributeVisitor("Filling out fields, method parameters, and return values",
+                                                            new PartialEvaluator(valueFactory, storingInvocationUnit,
+                                                                    fieldSpecializationType ||
+                                                                            methodSpecializationParametertype ||
+                                                                            methodSpecializationReturntype))));
                         }
                     };
 
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Filling out values in non-synthetic classes",
-                            new ParallelAllClassVisitor(
-                                    fillingOutValuesClassVisitor)));
+                    timed("Filling out values in non-synthetic classes",
+                            new ParallelAllMethodVisitor(workers, null, 0, AccessConstants.SYNTHETIC,
+                                    fillingOutValuesMemberVisitor)));
 
             if (fieldSpecializationType ||
                     methodSpecializationParametertype ||
@@ -637,7 +717,8 @@ public class Optimizer implements Pass {
                         new ClassAccessFilter(AccessConstants.SYNTHETIC, 0,
                                 new AllMethodVisitor(
                                         new AllAttributeVisitor(
-                                                new PartialEvaluator(valueFactory, loadingInvocationUnit, false)))));
+                                                new MethodBudgetFilter(overBudget,
+                                                        new PartialEvaluator(valueFactory, loadingInvocationUnit, false))))));
             }
         }
 
@@ -656,6 +737,7 @@ public class Optimizer implements Pass {
                                             methodPropagationReturnvalue);
 
                             return
+                                    new ClassSetFilter(affectedClasses,
                                     new AllMethodVisitor(
                                             new AllAttributeVisitor(
                                                     new DebugAttributeVisitor("Simplifying code",
@@ -663,15 +745,15 @@ public class Optimizer implements Pass {
                                                                     new EvaluationSimplifier(
                                                                             new PartialEvaluator(valueFactory, loadingInvocationUnit, false),
                                                                             codeSimplificationAdvancedCounter,
-                                                                            configuration.optimizeConservatively)))));
+                                                                            configuration.optimizeConservatively))))));
                         }
                     };
 
             // Simplify based on partial evaluation, propagating constant
             // field values, method parameter values, and return values.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Simplifying code",
-                            new ParallelAllClassVisitor(
+                    timed("Simplifying code",
+                            new ParallelAllClassVisitor(workers,
                                     simplifyingCodeVisitor)));
         }
 
@@ -694,6 +776,7 @@ public class Optimizer implements Pass {
                                     new ReferenceTracingValueFactory(valueFactory);
 
                             return
+                                    new ClassSetFilter(affectedClasses,
                                     new AllMethodVisitor(
                                             new AllAttributeVisitor(
                                                     new DebugAttributeVisitor("Shrinking code",
@@ -704,7 +787,7 @@ public class Optimizer implements Pass {
                                                                                             new ParameterTracingInvocationUnit(loadingInvocationUnit),
                                                                                             !codeSimplificationAdvanced,
                                                                                             referenceTracingValueFactory),
-                                                                                    true, configuration.optimizeConservatively), true, deletedCounter, addedCounter)))));
+                                                                                    true, configuration.optimizeConservatively), true, deletedCounter, addedCounter))))));
                         }
                     };
 
@@ -712,88 +795,111 @@ public class Optimizer implements Pass {
             // parameters from method invocations, and making methods static
             // if possible.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Shrinking code",
-                            new ParallelAllClassVisitor(
+                    timed("Shrinking code",
+                            new ParallelAllClassVisitor(workers,
                                     shrinkingCodeVisitor)));
         }
 
         if (codeRemovalAdvanced) {
             // Just update the local variable frame sizes.
             programClassPool.classesAccept(
+                    new ClassSetFilter(affectedClasses,
                     new AllMethodVisitor(
                             new AllAttributeVisitor(
                                     new OptimizationCodeAttributeFilter(
-                                            new StackSizeUpdater()))));
+                                            new StackSizeUpdater())))));
         }
 
         // Mark all classes with package visible members.
         // Mark all exception catches of methods.
         // Count all method invocations.
         // Mark super invocations and other access of methods.
-        StackSizeComputer stackSizeComputer = new StackSizeComputer();
+        // The markers of referenced classes and methods change the
+        // optimization info of other classes, so the instructions that they
+        // need are collected in parallel and only marked afterwards.
+        final DeferredInstructions referencingInstructions = new DeferredInstructions();
 
-        programClassPool.accept(
-                new TimedClassPoolVisitor("Marking method and referenced class properties",
-                        new MultiClassVisitor(
-                                // Mark classes.
-                                new OptimizationInfoClassFilter(
-                                        new MultiClassVisitor(
-                                                new PackageVisibleMemberContainingClassMarker(),
-                                                new WrapperClassMarker(),
-
-                                                new AllConstantVisitor(
-                                                        new PackageVisibleMemberInvokingClassMarker()),
-
-                                                new AllMemberVisitor(
-                                                        new ContainsConstructorsMarker())
-                                        )),
-
-                                // Mark methods.
-                                new AllMethodVisitor(
-                                        new OptimizationInfoMemberFilter(
+        ParallelAllClassVisitor.ClassVisitorFactory markingPropertiesClassVisitor =
+                new ParallelAllClassVisitor.ClassVisitorFactory() {
+                    public ClassVisitor createClassVisitor() {
+                        StackSizeComputer stackSizeComputer = new StackSizeComputer();
+
+                        return
+                                new MultiClassVisitor(
+                                        // Mark classes.
+                                        new OptimizationInfoClassFilter(
+                                                new MultiClassVisitor(
+                                                        new PackageVisibleMemberContainingClassMarker(),
+                                                        new WrapperClassMarker(),
+
+                                                        new AllConstantVisitor(
+                                                                new PackageVisibleMemberInvokingClassMarker()),
+
+                                                        new AllMemberVisitor(
+                                                                new ContainsConstructorsMarker())
+                                                )),
+
+                                        // Mark methods.
+                                        new AllMethodVisitor(
+                                                new OptimizationInfoMemberFilter(
+                                                        new AllAttributeVisitor(
+                                                                new DebugAttributeVisitor("Marking method properties",
+                                                                        new MultiAttributeVisitor(
+                                                                                stackSizeComputer,
+                                                                                new CatchExceptionMarker(),
+
+                                                                                new AllInstructionVisitor(
+                                                                                        new MultiInstructionVisitor(
+                                                                                                new SuperInvocationMarker(),
+                                                                                                new DynamicInvocationMarker(),
+                                                                                                new BackwardBranchMarker(),
+                                                                                                new AccessMethodMarker(),
+                                                                                                new SynchronizedBlockMethodMarker(),
+                                                                                                new FinalFieldAssignmentMarker(),
+                                                                                                new NonEmptyStackReturnMarker(stackSizeComputer)
+                                                                                        ))
+                                                                        ))))),
+
+                                        // Collect the instructions for marking
+                                        // referenced classes and methods.
+                                        new AllMethodVisitor(
                                                 new AllAttributeVisitor(
-                                                        new DebugAttributeVisitor("Marking method properties",
-                                                                new MultiAttributeVisitor(
-                                                                        stackSizeComputer,
-                                                                        new CatchExceptionMarker(),
-
-                                                                        new AllInstructionVisitor(
-                                                                                new MultiInstructionVisitor(
-                                                                                        new SuperInvocationMarker(),
-                                                                                        new DynamicInvocationMarker(),
-                                                                                        new BackwardBranchMarker(),
-                                                                                        new AccessMethodMarker(),
-                                                                                        new SynchronizedBlockMethodMarker(),
-                                                                                        new FinalFieldAssignmentMarker(),
-                                                                                        new NonEmptyStackReturnMarker(stackSizeComputer)
-                                                                                ))
-                                                                ))))),
+                                                        new AllInstructionVisitor(
+                                                                referencingInstructions.createCollector())))
+                                );
+                    }
+                };
+
+        programClassPool.accept(
+                timed("Marking method and referenced class properties",
+                        new MultiClassPoolVisitor(
+                                new ParallelAllClassVisitor(workers,
+                                        markingPropertiesClassVisitor),
 
                                 // Mark referenced classes and methods.
-                                new AllMethodVisitor(
-                                        new AllAttributeVisitor(
-                                                new DebugAttributeVisitor("Marking referenced class properties",
-                                                        new MultiAttributeVisitor(
+                                new AllClassVisitor(
+                                        new AllMethodVisitor(
+                                                new AllAttributeVisitor(
+                                                        new DebugAttributeVisitor("Marking referenced class properties",
                                                                 new AllExceptionInfoVisitor(
                                                                         new ExceptionHandlerConstantVisitor(
                                                                                 new ReferencedClassVisitor(
                                                                                         new OptimizationInfoClassFilter(
-                                                                                                new CaughtClassMarker())))),
-
-                                                                new AllInstructionVisitor(
-                                                                        new MultiInstructionVisitor(
-                                                                                new InstantiationClassMarker(),
-                                                                                new InstanceofClassMarker(),
-                                                                                new DotClassMarker(),
-                                                                                new MethodInvocationMarker()
-                                                                        ))
-                                                        ))))
+                                                                                                new CaughtClassMarker())))))))),
+
+                                referencingInstructions.instructionsAccepter(
+                                        new MultiInstructionVisitor(
+                                                new InstantiationClassMarker(),
+                                                new InstanceofClassMarker(),
+                                                new DotClassMarker(),
+                                                new MethodInvocationMarker()
+                                        ))
                         )));
 
         if (methodInliningUnique) {
             // Inline methods that are only invoked once.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Inlining single methods",
+                    timed("Inlining single methods",
                             new AllMethodVisitor(
                                     new AllAttributeVisitor(
                                             new DebugAttributeVisitor("Inlining single methods",
@@ -807,7 +913,7 @@ public class Optimizer implements Pass {
         if (methodInliningShort) {
             // Inline short methods.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Inlining short methods",
+                    timed("Inlining short methods",
                             new AllMethodVisitor(
                                     new AllAttributeVisitor(
                                             new DebugAttributeVisitor("Inlining short methods",
@@ -820,13 +926,22 @@ public class Optimizer implements Pass {
 
         if (methodInliningTailrecursion) {
             // Simplify tail recursion calls.
+            ParallelAllClassVisitor.ClassVisitorFactory simplifyingTailRecursionClassVisitor =
+                    new ParallelAllClassVisitor.ClassVisitorFactory() {
+                        public ClassVisitor createClassVisitor() {
+                            return
+                                    new AllMethodVisitor(
+                                            new AllAttributeVisitor(
+                                                    new DebugAttributeVisitor("Simplifying tail recursion",
+                                                            new OptimizationCodeAttributeFilter(
+                                                                    new TailRecursionSimplifier(methodInliningTailrecursionCounter)))));
+                        }
+                    };
+
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Simplifying tail recursion",
-                            new AllMethodVisitor(
-                                    new AllAttributeVisitor(
-                                            new DebugAttributeVisitor("Simplifying tail recursion",
-                                                    new OptimizationCodeAttributeFilter(
-                                                            new TailRecursionSimplifier(methodInliningTailrecursionCounter)))))));
+                    timed("Simplifying tail recursion",
+                            new ParallelAllClassVisitor(workers,
+                                    simplifyingTailRecursionClassVisitor)));
         }
 
         if ((methodInliningUniqueCounter.getCount() > 0 ||
@@ -848,13 +963,23 @@ public class Optimizer implements Pass {
 
         if (codeMerging) {
             // Share common blocks of code at branches.
+            ParallelAllClassVisitor.ClassVisitorFactory sharingCodeClassVisitor =
+                    new ParallelAllClassVisitor.ClassVisitorFactory() {
+                        public ClassVisitor createClassVisitor() {
+                            return
+                                    new ClassSetFilter(modifiedClasses,
+                                    new AllMethodVisitor(
+                                            new AllAttributeVisitor(
+                                                    new DebugAttributeVisitor("Sharing common code",
+                                                            new OptimizationCodeAttributeFilter(
+                                                                    new GotoCommonCodeReplacer(codeMergingCounter))))));
+                        }
+                    };
+
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Sharing common code",
-                            new AllMethodVisitor(
-                                    new AllAttributeVisitor(
-                                            new DebugAttributeVisitor("Sharing common code",
-                                                    new OptimizationCodeAttributeFilter(
-                                                            new GotoCommonCodeReplacer(codeMergingCounter)))))));
+                    timed("Sharing common code",
+                            new ParallelAllClassVisitor(workers,
+                                    sharingCodeClassVisitor)));
         }
 
         if (codeSimplificationPeephole) {
@@ -870,7 +995,7 @@ public class Optimizer implements Pass {
                                     new InstructionSequenceConstants(programClassPool,
                                             libraryClassPool);
 
-                            List<InstructionVisitor> peepholeOptimizations = createPeepholeOptimizations(configuration,
+                            PeepholeMatcher peepholeOptimizations = createPeepholeOptimizations(configuration,
                                     sequences,
                                     branchTargetFinder,
                                     codeAttributeEditor,
@@ -886,60 +1011,82 @@ public class Optimizer implements Pass {
                                     fieldGeneralizationClassCounter,
                                     methodGeneralizationClassCounter);
 
-                            // Convert the list into an array.
-                            InstructionVisitor[] peepholeOptimizationsArray =
-                                    new InstructionVisitor[peepholeOptimizations.size()];
-                            peepholeOptimizations.toArray(peepholeOptimizationsArray);
-
                             return
+                                    new ClassSetFilter(modifiedClasses,
                                     new AllMethodVisitor(
                                             new AllAttributeVisitor(
                                                     new DebugAttributeVisitor("Peephole optimizations",
                                                             new OptimizationCodeAttributeFilter(
                                                                     new PeepholeEditor(branchTargetFinder, codeAttributeEditor,
-                                                                            new MultiInstructionVisitor(
-                                                                                    peepholeOptimizationsArray))))));
+                                                                            peepholeOptimizations))))));
                         }
                     };
 
             // Perform the peephole optimisations.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Peephole optimizations",
-                            new ParallelAllClassVisitor(
+                    timed("Peephole optimizations",
+                            new ParallelAllClassVisitor(workers,
                                     peepHoleOptimizer)));
         }
 
         if (codeRemovalException) {
             // Remove unnecessary exception handlers.
+            ParallelAllClassVisitor.ClassVisitorFactory removingExceptionsClassVisitor =
+                    new ParallelAllClassVisitor.ClassVisitorFactory() {
+                        public ClassVisitor createClassVisitor() {
+                            return
+                                    new ClassSetFilter(modifiedClasses,
+                                    new AllMethodVisitor(
+                                            new AllAttributeVisitor(
+                                                    new DebugAttributeVisitor("Unreachable exception removal",
+                                                            new OptimizationCodeAttributeFilter(
+                                                                    new UnreachableExceptionRemover(codeRemovalExceptionCounter))))));
+                        }
+                    };
+
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Unreachable exception removal",
-                            new AllMethodVisitor(
-                                    new AllAttributeVisitor(
-                                            new DebugAttributeVisitor("Unreachable exception removal",
-                                                    new OptimizationCodeAttributeFilter(
-                                                            new UnreachableExceptionRemover(codeRemovalExceptionCounter)))))));
+                    timed("Unreachable exception removal",
+                            new ParallelAllClassVisitor(workers,
+                                    removingExceptionsClassVisitor)));
         }
 
         if (codeRemovalSimple) {
-            // Remove unreachable code.
-            programClassPool.accept(
-                    new TimedClassPoolVisitor("Unreachable code removal",
-                            new AllMethodVisitor(
+            // Remove unreachable code, in all classes that may have been
+            // simplified based on optimization info.
+            ParallelAllMethodVisitor.MemberVisitorFactory removingCodeMemberVisitor =
+                    new ParallelAllMethodVisitor.MemberVisitorFactory() {
+                        public MemberVisitor createMemberVisitor() {
+                            return
                                     new AllAttributeVisitor(
                                             new DebugAttributeVisitor("Unreachable code removal",
                                                     new OptimizationCodeAttributeFilter(
-                                                            new UnreachableCodeRemover(deletedCounter)))))));
+                                                            new UnreachableCodeRemover(deletedCounter))));
+                        }
+                    };
+
+            programClassPool.accept(
+                    timed("Unreachable code removal",
+                            new ParallelAllMethodVisitor(workers, affectedClasses, 0, 0,
+                                    removingCodeMemberVisitor)));
         }
 
         if (codeRemovalVariable) {
             // Remove all unused local variables.
-            programClassPool.accept(
-                    new TimedClassPoolVisitor("Variable shrinking",
-                            new AllMethodVisitor(
+            ParallelAllMethodVisitor.MemberVisitorFactory shrinkingVariablesMemberVisitor =
+                    new ParallelAllMethodVisitor.MemberVisitorFactory() {
+                        public MemberVisitor createMemberVisitor() {
+                            return
                                     new AllAttributeVisitor(
                                             new DebugAttributeVisitor("Variable shrinking",
                                                     new OptimizationCodeAttributeFilter(
-                                                            new VariableShrinker(codeRemovalVariableCounter)))))));
+                                                            new VariableShrinker(codeRemovalVariableCounter))));
+                        }
+                    };
+
+            programClassPool.accept(
+                    timed("Variable shrinking",
+                            new ParallelAllMethodVisitor(workers, modifiedClasses, 0, 0,
+                                    shrinkingVariablesMemberVisitor)));
         }
 
         if (codeAllocationVariable) {
@@ -947,25 +1094,34 @@ public class Optimizer implements Pass {
                     new ParallelAllClassVisitor.ClassVisitorFactory() {
                         public ClassVisitor createClassVisitor() {
                             return
+                                    new ClassSetFilter(modifiedClasses,
                                     new AllMethodVisitor(
                                             new AllAttributeVisitor(
                                                     new DebugAttributeVisitor("Variable optimizations",
                                                             new OptimizationCodeAttributeFilter(
-                                                                    new VariableOptimizer(false, codeAllocationVariableCounter)))));
+                                                                    new VariableOptimizer(false, codeAllocationVariableCounter))))));
                         }
                     };
 
             // Optimize the variables.
             programClassPool.accept(
-                    new TimedClassPoolVisitor("Variable optimizations",
-                            new ParallelAllClassVisitor(
+                    timed("Variable optimizations",
+                            new ParallelAllClassVisitor(workers,
                                     optimizingVariablesVisitor)));
         }
 
         // Remove unused constants.
+        ParallelAllClassVisitor.ClassVisitorFactory shrinkingConstantPoolClassVisitor =
+                new ParallelAllClassVisitor.ClassVisitorFactory() {
+                    public ClassVisitor createClassVisitor() {
+                        return new ConstantPoolShrinker();
+                    }
+                };
+
         programClassPool.accept(
-                new TimedClassPoolVisitor("Shrinking constant pool",
-                        new ConstantPoolShrinker()));
+                timed("Shrinking constant pool",
+                        new ParallelAllClassVisitor(workers,
+                                shrinkingConstantPoolClassVisitor)));
 
         int fieldGeneralizationClassCount = fieldGeneralizationClassCounter.getCount();
         int fieldSpecializationTypeCount = fieldSpecializationTypeCounter.getCount();
@@ -1032,6 +1188,38 @@ public class Optimizer implements Pass {
         logger.info("  Number of removed exception blocks:            {}{}", codeRemovalExceptionCount, disabled(codeRemovalException));
         logger.info("  Number of optimized local variable frames:     {}{}", codeAllocationVariableCount, disabled(codeAllocationVariable));
 
+        Map<String, Integer> counters = new LinkedHashMap<>();
+        putCounter(counters, FIELD_GENERALIZATION_CLASS, fieldGeneralizationClassCount, fieldGeneralizationClass);
+        putCounter(counters, FIELD_SPECIALIZATION_TYPE, fieldSpecializationTypeCount, fieldSpecializationType);
+        putCounter(counters, FIELD_PROPAGATION_VALUE, fieldPropagationValueCount, fieldPropagationValue);
+        putCounter(counters, METHOD_GENERALIZATION_CLASS, methodGeneralizationClassCount, methodGeneralizationClass);
+        putCounter(counters, METHOD_SPECIALIZATION_PARAMETER_TYPE, methodSpecializationParametertypeCount, methodSpecializationParametertype);
+        putCounter(counters, METHOD_SPECIALIZATION_RETURN_TYPE, methodSpecializationReturntypeCount, methodSpecializationReturntype);
+        putCounter(counters, METHOD_PROPAGATION_PARAMETER, methodPropagationParameterCount, methodPropagationParameter);
+        putCounter(counters, METHOD_PROPAGATION_RETURNVALUE, methodPropagationReturnvalueCount, methodPropagationReturnvalue);
+        putCounter(counters, METHOD_INLINING_SHORT, methodInliningShortCount, methodInliningShort);
+        putCounter(counters, METHOD_INLINING_UNIQUE, methodInliningUniqueCount, methodInliningUnique);
+        putCounter(counters, METHOD_INLINING_TAILRECURSION, methodInliningTailrecursionCount, methodInliningTailrecursion);
+        putCounter(counters, CODE_MERGING, codeMergingCount, codeMerging);
+        putCounter(counters, CODE_SIMPLIFICATION_VARIABLE, codeSimplificationVariableCount, codeSimplificationVariable);
+        putCounter(counters, CODE_SIMPLIFICATION_ARITHMETIC, codeSimplificationArithmeticCount, codeSimplificationArithmetic);
+        putCounter(counters, CODE_SIMPLIFICATION_CAST, codeSimplificationCastCount, codeSimplificationCast);
+        putCounter(counters, CODE_SIMPLIFICATION_FIELD, codeSimplificationFieldCount, codeSimplificationField);
+        putCounter(counters, CODE_SIMPLIFICATION_BRANCH, codeSimplificationBranchCount, codeSimplificationBranch);
+        putCounter(counters, CODE_SIMPLIFICATION_OBJECT, codeSimplificationObjectCount, codeSimplificationObject);
+        putCounter(counters, CODE_SIMPLIFICATION_STRING, codeSimplificationStringCount, codeSimplificationString);
+        putCounter(counters, CODE_SIMPLIFICATION_MATH, codeSimplificationMathCount, codeSimplificationMath);
+        if (configuration.android) {
+            putCounter(counters, CODE_SIMPLIFICATION_MATH + "/android", codeSimplificationAndroidMathCount, codeSimplificationMath);
+        }
+        putCounter(counters, CODE_SIMPLIFICATION_ADVANCED, codeSimplificationAdvancedCount, codeSimplificationAdvanced);
+        putCounter(counters, CODE_REMOVAL_ADVANCED, codeRemovalCount, codeRemovalAdvanced);
+        putCounter(counters, CODE_REMOVAL_VARIABLE, codeRemovalVariableCount, codeRemovalVariable);
+        putCounter(counters, CODE_REMOVAL_EXCEPTION, codeRemovalExceptionCount, codeRemovalException);
+        putCounter(counters, CODE_ALLOCATION_VARIABLE, codeAllocationVariableCount, codeAllocationVariable);
+
+        stageListener.passFinished(passIndex + 1, counters);
+
         moreOptimizationsPossible =
                         fieldGeneralizationClassCount > 0 ||
                         fieldSpecializationTypeCount > 0 ||
@@ -1062,75 +1250,75 @@ public class Optimizer implements Pass {
     }
 
 
-    private List<InstructionVisitor> createPeepholeOptimizations(Configuration configuration,
-                                                                 InstructionSequenceConstants sequences,
-                                                                 BranchTargetFinder branchTargetFinder,
-                                                                 CodeAttributeEditor codeAttributeEditor,
-                                                                 InstructionCounter codeSimplificationVariableCounter,
-                                                                 InstructionCounter codeSimplificationArithmeticCounter,
-                                                                 InstructionCounter codeSimplificationCastCounter,
-                                                                 InstructionCounter codeSimplificationFieldCounter,
-                                                                 InstructionCounter codeSimplificationBranchCounter,
-                                                                 InstructionCounter codeSimplificationObjectCounter,
-                                                                 InstructionCounter codeSimplificationStringCounter,
-                                                                 InstructionCounter codeSimplificationMathCounter,
-                                                                 InstructionCounter codeSimplificationAndroidMathCounter,
-                                                                 InstructionCounter fieldGeneralizationClassCounter,
-                                                                 InstructionCounter methodGeneralizationClassCounter) {
-        List<InstructionVisitor> peepholeOptimizations = new ArrayList<>();
+    private PeepholeMatcher createPeepholeOptimizations(Configuration configuration,
+                                                        InstructionSequenceConstants sequences,
+                                                        BranchTargetFinder branchTargetFinder,
+                                                        CodeAttributeEditor codeAttributeEditor,
+                                                        InstructionCounter codeSimplificationVariableCounter,
+                                                        InstructionCounter codeSimplificationArithmeticCounter,
+                                                        InstructionCounter codeSimplificationCastCounter,
+                                                        InstructionCounter codeSimplificationFieldCounter,
+                                                        InstructionCounter codeSimplificationBranchCounter,
+                                                        InstructionCounter codeSimplificationObjectCounter,
+                                                        InstructionCounter codeSimplificationStringCounter,
+                                                        InstructionCounter codeSimplificationMathCounter,
+                                                        InstructionCounter codeSimplificationAndroidMathCounter,
+                                                        InstructionCounter fieldGeneralizationClassCounter,
+                                                        InstructionCounter methodGeneralizationClassCounter) {
+        PeepholeMatcher peepholeOptimizations = new PeepholeMatcher();
 
         if (codeSimplificationVariable) {
             // Peephole optimizations involving local variables.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.VARIABLE_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationVariableCounter));
+                    codeSimplificationVariableCounter);
         }
 
         if (codeSimplificationArithmetic) {
             // Peephole optimizations involving arithmetic operations.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.ARITHMETIC_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationArithmeticCounter));
+                    codeSimplificationArithmeticCounter);
         }
 
         if (codeSimplificationCast) {
             // Peephole optimizations involving cast operations.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.CAST_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationCastCounter));
+                    codeSimplificationCastCounter);
         }
 
         if (codeSimplificationField) {
             // Peephole optimizations involving fields.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.FIELD_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationFieldCounter));
+                    codeSimplificationFieldCounter);
         }
 
         if (codeSimplificationBranch) {
             // Peephole optimizations involving branches.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.BRANCH_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationBranchCounter));
+                    codeSimplificationBranchCounter);
         }
 
         if (codeSimplificationObject) {
             // Peephole optimizations involving objects.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.OBJECT_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationObjectCounter));
+                    codeSimplificationObjectCounter);
 
             // Include optimizations of instance references on classes without
             // constructors.
@@ -1140,26 +1328,26 @@ public class Optimizer implements Pass {
 
         if (codeSimplificationString) {
             // Peephole optimizations involving branches.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.STRING_SEQUENCES,
                     branchTargetFinder, codeAttributeEditor,
-                    codeSimplificationStringCounter));
+                    codeSimplificationStringCounter);
         }
 
         if (codeSimplificationMath) {
             // Peephole optimizations involving math.
-            peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+            peepholeOptimizations.addSequences(sequences.CONSTANTS,
                     sequences.MATH_SEQUENCES,
                     branchTargetFinder,
                     codeAttributeEditor,
-                    codeSimplificationMathCounter));
+                    codeSimplificationMathCounter);
 
             if (configuration.android) {
-                peepholeOptimizations.add(new InstructionSequencesReplacer(sequences.CONSTANTS,
+                peepholeOptimizations.addSequences(sequences.CONSTANTS,
                         sequences.MATH_ANDROID_SEQUENCES,
                         branchTargetFinder,
                         codeAttributeEditor,
-                        codeSimplificationAndroidMathCounter));
+                        codeSimplificationAndroidMathCounter);
             }
         }
 
@@ -1188,6 +1376,35 @@ public class Optimizer implements Pass {
     }
 
 
+    /**
+     * Wraps the given class visitor in a stage that is timed and reported.
+     */
+    private ClassPoolVisitor timed(String name, ClassVisitor classVisitor) {
+        return new StageClassPoolVisitor(passIndex + 1, name, stageListener, workers.cancellation(),
+                new TimedClassPoolVisitor(name, classVisitor));
+    }
+
+
+    /**
+     * Wraps the given class pool visitor in a stage that is timed and reported.
+     */
+    private ClassPoolVisitor timed(String name, ClassPoolVisitor classPoolVisitor) {
+        return new StageClassPoolVisitor(passIndex + 1, name, stageListener, workers.cancellation(),
+                new TimedClassPoolVisitor(name, classPoolVisitor));
+    }
+
+
+    /**
+     * Puts the count of the given optimization into the given counters,
+     * if the optimization is enabled.
+     */
+    private static void putCounter(Map<String, Integer> counters, String name, int count, boolean flag) {
+        if (flag) {
+            counters.put(name, count);
+        }
+    }
+
+
     /**
      * Returns a String indicating whether the given flag is enabled or
      * disabled.
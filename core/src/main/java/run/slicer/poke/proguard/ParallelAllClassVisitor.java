@@ -0,0 +1,62 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassPoolVisitor;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This {@link ClassPoolVisitor} visits all classes of the visited class pool in parallel,
+ * using the given {@link Workers} rather than a pool sized by the global {@code parallel.threads} property.
+ * <p>
+ * Each worker creates its own {@link ClassVisitor} with the given factory and then claims
+ * classes one at a time, so a few large classes don't hold up the others.
+ * Stages that only change the visited methods can use a {@link ParallelAllMethodVisitor} instead,
+ * which also splits up giant classes.
+ */
+public class ParallelAllClassVisitor implements ClassPoolVisitor {
+    private final Workers workers;
+    private final ClassVisitorFactory classVisitorFactory;
+
+    public ParallelAllClassVisitor(Workers workers, ClassVisitorFactory classVisitorFactory) {
+        this.workers = workers;
+        this.classVisitorFactory = classVisitorFactory;
+    }
+
+    // Implementations for ClassPoolVisitor.
+
+    @Override
+    public void visitClassPool(ClassPool classPool) {
+        final List<Clazz> classes = new ArrayList<>(classPool.size());
+        for (final Clazz clazz : classPool.classes()) {
+            classes.add(clazz);
+        }
+
+        final var index = new AtomicInteger();
+        workers.run(() -> {
+            ClassVisitor classVisitor = null;
+
+            int i;
+            while ((i = index.getAndIncrement()) < classes.size()) {
+                workers.cancellation().check();
+
+                if (classVisitor == null) {
+                    classVisitor = classVisitorFactory.createClassVisitor();
+                }
+
+                classes.get(i).accept(classVisitor);
+            }
+        });
+    }
+
+    /**
+     * A factory for the class visitors of the individual workers.
+     */
+    public interface ClassVisitorFactory {
+        ClassVisitor createClassVisitor();
+    }
+}
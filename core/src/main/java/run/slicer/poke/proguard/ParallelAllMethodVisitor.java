@@ -0,0 +1,157 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.ProgramClass;
+import proguard.classfile.ProgramMethod;
+import proguard.classfile.attribute.Attribute;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.visitor.ClassPoolVisitor;
+import proguard.classfile.visitor.MemberVisitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This {@link ClassPoolVisitor} visits all methods of the program classes of the visited class pool in parallel,
+ * using the given {@link Workers}.
+ * <p>
+ * Unlike {@link ParallelAllClassVisitor}, work is handed out in units sized by their bytecode length, rather than
+ * in whole classes. Classes with more code than a fair share of a worker are split up at method boundaries,
+ * and units are claimed largest first, so a single giant class can't keep one worker busy while the others idle.
+ * A method is never split up, so one giant method still takes as long as it takes.
+ * <p>
+ * The methods of a class may be visited by several workers at the same time, so the visitors must only change
+ * the visited methods, e.g. their code attributes, and not the class itself, e.g. its constant pool.
+ */
+public class ParallelAllMethodVisitor implements ClassPoolVisitor {
+    private static final int UNITS_PER_WORKER = 8;
+    private static final int MIN_UNIT_SIZE = 4096;
+
+    private final Workers workers;
+    private final Set<Clazz> classes;
+    private final int requiredSetAccessFlags;
+    private final int requiredUnsetAccessFlags;
+    private final MemberVisitorFactory memberVisitorFactory;
+
+    public ParallelAllMethodVisitor(Workers workers, MemberVisitorFactory memberVisitorFactory) {
+        this(workers, null, 0, 0, memberVisitorFactory);
+    }
+
+    /**
+     * @param classes                  the classes whose methods are visited, null for all classes
+     * @param requiredSetAccessFlags   the access flags that the classes must have, like a {@link proguard.classfile.visitor.ClassAccessFilter}
+     * @param requiredUnsetAccessFlags the access flags that the classes must not have
+     */
+    public ParallelAllMethodVisitor(Workers workers, Set<Clazz> classes, int requiredSetAccessFlags, int requiredUnsetAccessFlags, MemberVisitorFactory memberVisitorFactory) {
+        this.workers = workers;
+        this.classes = classes;
+        this.requiredSetAccessFlags = requiredSetAccessFlags;
+        this.requiredUnsetAccessFlags = requiredUnsetAccessFlags;
+        this.memberVisitorFactory = memberVisitorFactory;
+    }
+
+    // Implementations for ClassPoolVisitor.
+
+    @Override
+    public void visitClassPool(ClassPool classPool) {
+        final List<ProgramClass> programClasses = new ArrayList<>();
+        final List<int[]> sizes = new ArrayList<>();
+        long total = 0;
+        for (final Clazz clazz : classPool.classes()) {
+            if (clazz instanceof ProgramClass programClass && accepts(programClass)) {
+                final var methodSizes = new int[programClass.u2methodsCount];
+                for (int i = 0; i < methodSizes.length; i++) {
+                    methodSizes[i] = size((ProgramMethod) programClass.methods[i]);
+                    total += methodSizes[i];
+                }
+
+                programClasses.add(programClass);
+                sizes.add(methodSizes);
+            }
+        }
+
+        // classes up to the unit size are visited whole, larger ones are split up into runs of methods of about that size
+        final long unitSize = Math.max(MIN_UNIT_SIZE, total / ((long) workers.parallelism() * UNITS_PER_WORKER));
+
+        final List<Unit> units = new ArrayList<>();
+        for (int c = 0; c < programClasses.size(); c++) {
+            final int[] methodSizes = sizes.get(c);
+
+            int start = 0;
+            long size = 0;
+            for (int i = 0; i < methodSizes.length; i++) {
+                size += methodSizes[i];
+                if (size >= unitSize) {
+                    units.add(new Unit(programClasses.get(c), start, i + 1, size));
+                    start = i + 1;
+                    size = 0;
+                }
+            }
+            if (start < methodSizes.length) {
+                units.add(new Unit(programClasses.get(c), start, methodSizes.length, size));
+            }
+        }
+
+        units.sort(Comparator.comparingLong(Unit::size).reversed());
+
+        final var index = new AtomicInteger();
+        workers.run(() -> {
+            MemberVisitor memberVisitor = null;
+
+            int i;
+            while ((i = index.getAndIncrement()) < units.size()) {
+                workers.cancellation().check();
+
+                if (memberVisitor == null) {
+                    memberVisitor = memberVisitorFactory.createMemberVisitor();
+                }
+
+                units.get(i).accept(memberVisitor);
+            }
+        });
+    }
+
+    private boolean accepts(ProgramClass programClass) {
+        final int accessFlags = programClass.getAccessFlags();
+
+        return (classes == null || classes.contains(programClass))
+                && (accessFlags & requiredSetAccessFlags) == requiredSetAccessFlags
+                && (accessFlags & requiredUnsetAccessFlags) == 0;
+    }
+
+    /**
+     * Returns the size of a method for balancing, its bytecode length, plus one for the visit itself.
+     */
+    private static int size(ProgramMethod method) {
+        for (int i = 0; i < method.u2attributesCount; i++) {
+            final Attribute attribute = method.attributes[i];
+            if (attribute instanceof CodeAttribute codeAttribute) {
+                return codeAttribute.u4codeLength + 1;
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * A run of methods of a class.
+     */
+    private record Unit(ProgramClass programClass, int start, int end, long size) {
+        void accept(MemberVisitor memberVisitor) {
+            for (int i = this.start; i < this.end; i++) {
+                this.programClass.methods[i].accept(this.programClass, memberVisitor);
+            }
+        }
+    }
+
+    /**
+     * A factory for the member visitors of the individual workers.
+     */
+    public interface MemberVisitorFactory {
+        MemberVisitor createMemberVisitor();
+    }
+}
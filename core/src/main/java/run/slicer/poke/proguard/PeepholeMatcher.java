@@ -0,0 +1,148 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.Method;
+import proguard.classfile.attribute.CodeAttribute;
+import proguard.classfile.constant.Constant;
+import proguard.classfile.editor.CodeAttributeEditor;
+import proguard.classfile.editor.InstructionSequenceReplacer;
+import proguard.classfile.instruction.BranchInstruction;
+import proguard.classfile.instruction.ConstantInstruction;
+import proguard.classfile.instruction.Instruction;
+import proguard.classfile.instruction.LookUpSwitchInstruction;
+import proguard.classfile.instruction.SimpleInstruction;
+import proguard.classfile.instruction.TableSwitchInstruction;
+import proguard.classfile.instruction.VariableInstruction;
+import proguard.classfile.instruction.visitor.InstructionVisitor;
+import proguard.classfile.util.BranchTargetFinder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This InstructionVisitor combines any number of instruction sequence
+ * replacers and other peephole optimizations into a single visitor that
+ * only passes each instruction to the replacers that can actually match it.
+ * <p>
+ * All pattern instructions are indexed by their canonical opcode once,
+ * when they're added. A replacer that isn't in the middle of a match and
+ * doesn't have the opcode of an instruction anywhere in its pattern would
+ * only reset its matcher for that instruction, so it doesn't get to see it
+ * at all. Every other visitor sees the instruction, in the order in which
+ * the visitors were added, so the result is the same as with a
+ * {@link proguard.classfile.instruction.visitor.MultiInstructionVisitor}
+ * over {@link proguard.classfile.editor.InstructionSequencesReplacer}s,
+ * including the counts of their extra instruction visitors.
+ * <p>
+ * Like the replacers, this visitor is stateful and can't be shared between
+ * threads.
+ */
+class PeepholeMatcher
+        implements InstructionVisitor {
+    private static final int PATTERN_INDEX = 0;
+    private static final int REPLACEMENT_INDEX = 1;
+
+    // The instruction types that are matched by their opcode, patterns with
+    // anything else (e.g. labels) are always passed all instructions.
+    private static final Set<Class<?>> OPCODE_MATCHED = Set.of(
+            SimpleInstruction.class,
+            VariableInstruction.class,
+            ConstantInstruction.class,
+            BranchInstruction.class,
+            TableSwitchInstruction.class,
+            LookUpSwitchInstruction.class
+    );
+
+    private final List<InstructionVisitor> instructionVisitors = new ArrayList<>();
+
+    // The visitors that can match each canonical opcode.
+    private final BitSet[] opcodeVisitors = new BitSet[256];
+
+    // The visitors that see all instructions.
+    private final BitSet allInstructionVisitors = new BitSet();
+
+    // The visitors that may be in the middle of a match.
+    private final BitSet matchingVisitors = new BitSet();
+
+    private final BitSet selectedVisitors = new BitSet();
+
+
+    public PeepholeMatcher() {
+        for (int opcode = 0; opcode < opcodeVisitors.length; opcode++) {
+            opcodeVisitors[opcode] = new BitSet();
+        }
+    }
+
+
+    /**
+     * Adds a replacer for each of the given instruction sequences, like an
+     * {@link proguard.classfile.editor.InstructionSequencesReplacer}.
+     *
+     * @param constants                the constants referenced by the
+     *                                 sequences
+     * @param instructionSequences     the pairs of pattern and replacement
+     *                                 instructions
+     * @param extraInstructionVisitor  an optional visitor for all replaced
+     *                                 instructions
+     */
+    public void addSequences(Constant[] constants,
+                             Instruction[][][] instructionSequences,
+                             BranchTargetFinder branchTargetFinder,
+                             CodeAttributeEditor codeAttributeEditor,
+                             InstructionVisitor extraInstructionVisitor) {
+        for (Instruction[][] instructionSequence : instructionSequences) {
+            Instruction[] pattern = instructionSequence[PATTERN_INDEX];
+
+            int index = instructionVisitors.size();
+            instructionVisitors.add(
+                    new InstructionSequenceReplacer(constants,
+                            pattern,
+                            constants,
+                            instructionSequence[REPLACEMENT_INDEX],
+                            branchTargetFinder,
+                            codeAttributeEditor,
+                            extraInstructionVisitor));
+
+            for (Instruction instruction : pattern) {
+                if (!OPCODE_MATCHED.contains(instruction.getClass())) {
+                    allInstructionVisitors.set(index);
+                    break;
+                }
+
+                opcodeVisitors[instruction.canonicalOpcode() & 0xff].set(index);
+            }
+        }
+    }
+
+
+    /**
+     * Adds a visitor that sees all instructions.
+     */
+    public void add(InstructionVisitor instructionVisitor) {
+        allInstructionVisitors.set(instructionVisitors.size());
+        instructionVisitors.add(instructionVisitor);
+    }
+
+
+    // Implementations for InstructionVisitor.
+
+    public void visitAnyInstruction(Clazz clazz, Method method, CodeAttribute codeAttribute, int offset, Instruction instruction) {
+        BitSet candidates = opcodeVisitors[instruction.canonicalOpcode() & 0xff];
+
+        selectedVisitors.clear();
+        selectedVisitors.or(allInstructionVisitors);
+        selectedVisitors.or(candidates);
+        selectedVisitors.or(matchingVisitors);
+
+        for (int index = selectedVisitors.nextSetBit(0); index >= 0; index = selectedVisitors.nextSetBit(index + 1)) {
+            instruction.accept(clazz, method, codeAttribute, offset, instructionVisitors.get(index));
+        }
+
+        // Only the replacers that could match this instruction may be in the
+        // middle of a match now, all others have been reset.
+        matchingVisitors.clear();
+        matchingVisitors.or(candidates);
+    }
+}
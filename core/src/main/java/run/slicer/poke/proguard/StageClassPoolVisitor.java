@@ -0,0 +1,46 @@
+package run.slicer.poke.proguard;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.visitor.ClassPoolVisitor;
+
+/**
+ * This {@link ClassPoolVisitor} delegates its visits to another given {@link ClassPoolVisitor},
+ * reporting its start and the time it took to a {@link StageListener}.
+ * The stage isn't started at all if the given {@link Cancellation} has been cancelled.
+ */
+class StageClassPoolVisitor implements ClassPoolVisitor {
+    private final int pass;
+    private final String name;
+    private final StageListener listener;
+    private final Cancellation cancellation;
+    private final ClassPoolVisitor classPoolVisitor;
+
+    public StageClassPoolVisitor(int pass, String name, StageListener listener, Cancellation cancellation, ClassPoolVisitor classPoolVisitor) {
+        this.pass = pass;
+        this.name = name;
+        this.listener = listener;
+        this.cancellation = cancellation;
+        this.classPoolVisitor = classPoolVisitor;
+    }
+
+    // Implementations for ClassPoolVisitor.
+
+    @Override
+    public void visitClassPool(ClassPool classPool) {
+        cancellation.check();
+        listener.stageStarted(pass, name, classPool.size());
+
+        final long startWallTime = System.nanoTime();
+        final long startCpuTime = listener.cpuTime();
+
+        // Finish the stage even if it fails or is stopped, so started
+        // stages are always matched.
+        try {
+            classPoolVisitor.visitClassPool(classPool);
+        } finally {
+            final long endCpuTime = listener.cpuTime();
+            listener.stageFinished(pass, name, System.nanoTime() - startWallTime,
+                    startCpuTime < 0 || endCpuTime < 0 ? -1 : endCpuTime - startCpuTime);
+        }
+    }
+}
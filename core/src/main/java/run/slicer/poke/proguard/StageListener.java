@@ -0,0 +1,51 @@
+package run.slicer.poke.proguard;
+
+import java.util.Map;
+
+/**
+ * A listener for the progress of the {@link Optimizer}.
+ */
+public interface StageListener {
+    StageListener NONE = new StageListener() {
+    };
+
+    /**
+     * Returns the current CPU time in nanoseconds, or -1 if it can't be measured.
+     */
+    default long cpuTime() {
+        return -1;
+    }
+
+    /**
+     * Called before a stage of the given pass starts.
+     *
+     * @param pass    the 1-based pass index
+     * @param classes the amount of classes in the program class pool
+     */
+    default void stageStarted(int pass, String name, int classes) {
+    }
+
+    /**
+     * Called after a stage of the given pass has finished.
+     *
+     * @param pass the 1-based pass index
+     */
+    default void stageFinished(int pass, String name, long wallTime, long cpuTime) {
+    }
+
+    /**
+     * Called after a pass has finished, with the optimization counts keyed by the optimization names.
+     */
+    default void passFinished(int pass, Map<String, Integer> counters) {
+    }
+
+    /**
+     * Called when a method is left unoptimized for being over its {@link MethodBudget}, possibly concurrently.
+     *
+     * @param className the internal name of the class
+     * @param method    the method name and descriptor
+     * @param reason    a human-readable description of the exceeded limit
+     */
+    default void methodSkipped(String className, String method, String reason) {
+    }
+}
@@ -0,0 +1,145 @@
+package run.slicer.poke.proguard;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A parallelism budget on top of an executor.
+ * <p>
+ * The calling thread always takes part in the work, so progress is guaranteed even if the executor
+ * is saturated (e.g. when it's shared with the caller); workers that only start once all work
+ * has been claimed by others exit right away and aren't waited for.
+ */
+public final class Workers {
+    /**
+     * Runs all work on the calling thread.
+     */
+    public static final Workers INLINE = new Workers(Runnable::run, 1);
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Cancellation cancellation;
+
+    // Set when a caller is interrupted while waiting for the other workers,
+    // which then stop at their next cancellation check.
+    private volatile boolean stopped = false;
+    private final Cancellation checked;
+
+    public Workers(Executor executor, int parallelism) {
+        this(executor, parallelism, Cancellation.NONE);
+    }
+
+    /**
+     * @param cancellation the cancellation checked by the work run with these workers
+     */
+    public Workers(Executor executor, int parallelism, Cancellation cancellation) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.cancellation = cancellation;
+        this.checked = () -> stopped || cancellation.isCancelled();
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the cancellation checked by the work run with these workers, which is also cancelled
+     * once a caller of {@link #run(Runnable)} has been interrupted.
+     */
+    public Cancellation cancellation() {
+        return checked;
+    }
+
+    /**
+     * Returns workers on the same executor with the same parallelism, checking another cancellation.
+     */
+    public Workers withCancellation(Cancellation cancellation) {
+        return new Workers(executor, parallelism, cancellation);
+    }
+
+    /**
+     * Runs the given worker on up to {@link #parallelism()} threads, including the calling one.
+     * <p>
+     * The worker is expected to claim work items from shared state until there are none left,
+     * the first failure of any worker is rethrown once all started workers have finished.
+     * <p>
+     * If the calling thread is interrupted while waiting, the other workers are cancelled,
+     * and the interruption is only rethrown once they've stopped, so nothing uses the shared state anymore.
+     */
+    public void run(Runnable worker) {
+        final var state = new State();
+        final Runnable tracked = () -> {
+            synchronized (state) {
+                state.active++;
+            }
+            try {
+                worker.run();
+            } catch (Throwable t) {
+                synchronized (state) {
+                    if (state.error == null) {
+                        state.error = t;
+                    } else {
+                        state.error.addSuppressed(t);
+                    }
+                }
+            } finally {
+                synchronized (state) {
+                    state.active--;
+                    state.notifyAll();
+                }
+            }
+        };
+
+        for (int i = 1; i < parallelism; i++) {
+            try {
+                executor.execute(tracked);
+            } catch (RejectedExecutionException ignored) {
+                // the calling thread picks up the slack
+                break;
+            }
+        }
+        tracked.run();
+
+        synchronized (state) {
+            InterruptedException interruption = null;
+            while (state.active > 0) {
+                try {
+                    state.wait();
+                } catch (InterruptedException e) {
+                    stopped = true;
+                    interruption = e;
+                }
+            }
+
+            if (interruption != null) {
+                Thread.currentThread().interrupt();
+
+                final var e = new RuntimeException(interruption);
+                if (state.error != null) {
+                    e.addSuppressed(state.error);
+                }
+                throw e;
+            }
+
+            if (state.error instanceof RuntimeException e) {
+                throw e;
+            }
+            if (state.error instanceof Error e) {
+                throw e;
+            }
+            if (state.error != null) {
+                throw new RuntimeException(state.error);
+            }
+        }
+    }
+
+    private static final class State {
+        private int active = 0;
+        private Throwable error = null;
+    }
+}
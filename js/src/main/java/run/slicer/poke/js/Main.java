@@ -10,7 +10,8 @@ import run.slicer.poke.Analyzer;
 
 public class Main {
     static {
-        // effectively disable parallel processing support
+        // effectively disable parallel processing support in the one stage still on a global pool,
+        // proguard-core's side effect fixpoint, which sizes its own pool by this property
         // the proper fix would be to stop proguard-core from casting threads to its own objects,
         // but I really can't be bothered to stub that all out
         System.setProperty("parallel.threads", "1");
@@ -30,6 +31,7 @@ public class Main {
                             .optimize(options.optimize())
                             .verify(options.verify())
                             .inline(options.inline())
+                            .threads(1)
                             .build();
 
                     resolve.accept(wrapByteArray(analyzer.analyze(data)));
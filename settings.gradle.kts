@@ -17,4 +17,4 @@ fun includePrefixed(vararg modules: String) {
     }
 }
 
-includePrefixed("core", "cli", "js")
+includePrefixed("core", "cli", "js", "bench")